@@ -8,13 +8,33 @@
 package com.uniquid.core;
 
 import com.uniquid.connector.Connector;
+import com.uniquid.core.auth.AuthorizationTable;
+import com.uniquid.core.auth.ContractPermission;
+import com.uniquid.core.auth.SenderFilter;
+import com.uniquid.core.cache.IdempotencyStore;
+import com.uniquid.core.cache.RequestCoalescer;
+import com.uniquid.core.cache.ResultCache;
+import com.uniquid.core.impl.Bulkhead;
+import com.uniquid.core.impl.RateLimiter;
+import com.uniquid.core.interceptor.InterceptorChain;
+import com.uniquid.core.interceptor.ProviderExchange;
+import com.uniquid.core.interceptor.RequestInterceptor;
+import com.uniquid.core.metrics.MetricsRegistry;
+import com.uniquid.core.provider.AsyncFunction;
+import com.uniquid.core.provider.CacheableFunction;
 import com.uniquid.core.provider.Function;
 import com.uniquid.core.provider.FunctionContext;
+import com.uniquid.core.provider.RequestContext;
+import com.uniquid.core.provider.StreamingFunction;
 import com.uniquid.core.provider.impl.ApplicationContext;
+import com.uniquid.core.provider.impl.AsyncFunctionAdapter;
+import com.uniquid.core.provider.impl.StreamingFunctionAdapter;
 import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
 import com.uniquid.node.UniquidNode;
+import com.uniquid.node.listeners.EmptyUniquidNodeEventListener;
 import com.uniquid.register.RegisterFactory;
+import com.uniquid.register.exception.RegisterException;
 import com.uniquid.register.provider.ProviderChannel;
 import com.uniquid.register.provider.ProviderRegister;
 import org.slf4j.Logger;
@@ -23,6 +43,20 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * This is the core of Uniquid library. It contains a collection of functionalities
@@ -32,12 +66,26 @@ public abstract class Core {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Core.class.getName());
 
+    private static final Runnable NO_RELEASE = () -> { };
+
     public static final String NODE_ATTRIBUTE = com.uniquid.node.UniquidNode.class.getName();
     public static final String REGISTER_FACTORY_ATTRIBUTE = com.uniquid.register.RegisterFactory.class.getName();
 
     private RegisterFactory registerFactory;
     private ApplicationContext applicationContext;
     private UniquidNode uniquidNode;
+    private final AuthorizationTable authorizationTable = new AuthorizationTable();
+    private volatile SenderFilter senderFilter;
+    private volatile IdempotencyStore idempotencyStore;
+    private volatile ResultCache resultCache;
+    private volatile RequestCoalescer requestCoalescer;
+    private volatile RateLimiter rateLimiter;
+    private volatile MetricsRegistry metricsRegistry;
+    private final List<RequestInterceptor> interceptors = new CopyOnWriteArrayList<>();
+    private volatile InterceptorChain interceptorChain = this::proceed;
+    private volatile long defaultTimeoutMillis;
+    private volatile int chunkSize = 16 * 1024;
+    private ScheduledExecutorService deadlineScheduler;
 
     /**
      * Creates an instance from {@link RegisterFactory}, {@link Connector} and {@link UniquidNode}
@@ -55,6 +103,55 @@ public abstract class Core {
         applicationContext.setAttribute(REGISTER_FACTORY_ATTRIBUTE, registerFactory);
         applicationContext.setAttributeReadOnly(REGISTER_FACTORY_ATTRIBUTE);
 
+        if (node != null) {
+
+            // Keep the authorization table aligned with the contracts received by the node
+            node.addUniquidNodeEventListener(new EmptyUniquidNodeEventListener() {
+
+                @Override
+                public void onProviderContractCreated(ProviderChannel providerChannel) {
+
+                    // Creating a contract can silently delete the imprinting one: mirror it in the table
+                    String superseded = authorizationTable.removeSupersededImprinting(providerChannel);
+
+                    authorizationTable.put(providerChannel);
+
+                    SenderFilter filter = senderFilter;
+                    if (filter != null) {
+                        filter.senderAuthorized(providerChannel.getUserAddress());
+                    }
+
+                    ResultCache cache = resultCache;
+                    if (superseded != null && cache != null) {
+                        cache.invalidateUser(superseded);
+                    }
+
+                }
+
+                @Override
+                public void onProviderContractRevoked(ProviderChannel providerChannel) {
+
+                    authorizationTable.remove(providerChannel);
+
+                    ResultCache cache = resultCache;
+                    if (cache != null) {
+                        cache.invalidateUser(providerChannel.getUserAddress());
+                    }
+
+                }
+
+            });
+
+        }
+
+        try {
+
+            refreshAuthorizations();
+
+        } catch (Exception ex) {
+            LOGGER.warn("Unable to load authorizations from Provider register. Will load them on demand", ex);
+        }
+
     }
 
     /**
@@ -81,6 +178,274 @@ public abstract class Core {
         return applicationContext;
     }
 
+    /**
+     * Retrieve the {@link AuthorizationTable} instance in use.
+     * @return the {@link AuthorizationTable} instance in use.
+     */
+    public AuthorizationTable getAuthorizationTable() {
+        return authorizationTable;
+    }
+
+    /**
+     * Reload the {@link AuthorizationTable} from the content of the {@link ProviderRegister}
+     *
+     * @throws RegisterException in case a problem occurs.
+     */
+    public void refreshAuthorizations() throws RegisterException {
+
+        authorizationTable.reload(registerFactory.getProviderRegister());
+
+        SenderFilter filter = senderFilter;
+        if (filter != null) {
+            filter.rebuild(authorizationTable.getUserAddresses());
+        }
+
+    }
+
+    /**
+     * Retrieve the {@link SenderFilter} in use or null if unknown senders are looked up in the register.
+     * @return the {@link SenderFilter} in use or null.
+     */
+    public SenderFilter getSenderFilter() {
+        return senderFilter;
+    }
+
+    /**
+     * Install a {@link SenderFilter} that rejects the requests coming from unknown senders without querying the
+     * {@link ProviderRegister}. The filter is populated from the register before being installed.
+     *
+     * @param senderFilter the {@link SenderFilter} to use or null to disable the filtering
+     * @throws RegisterException in case a problem occurs while reading the register.
+     */
+    public void setSenderFilter(SenderFilter senderFilter) throws RegisterException {
+
+        if (senderFilter != null) {
+
+            authorizationTable.reload(registerFactory.getProviderRegister());
+            senderFilter.rebuild(authorizationTable.getUserAddresses());
+
+        }
+
+        this.senderFilter = senderFilter;
+
+    }
+
+    /**
+     * Retrieve the {@link IdempotencyStore} in use or null if duplicate requests are executed again.
+     * @return the {@link IdempotencyStore} in use or null.
+     */
+    public IdempotencyStore getIdempotencyStore() {
+        return idempotencyStore;
+    }
+
+    /**
+     * Install an {@link IdempotencyStore} that answers to the duplicate requests with the response of the first
+     * execution instead of executing the function again.
+     *
+     * @param idempotencyStore the {@link IdempotencyStore} to use or null to execute every request
+     */
+    public void setIdempotencyStore(IdempotencyStore idempotencyStore) {
+        this.idempotencyStore = idempotencyStore;
+    }
+
+    /**
+     * Retrieve the {@link ResultCache} in use or null if the results are never cached.
+     * @return the {@link ResultCache} in use or null.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Install a {@link ResultCache} that answers to the requests for a {@link CacheableFunction} with the result
+     * of a previous execution with the same parameters and contract payload.
+     *
+     * @param resultCache the {@link ResultCache} to use or null to disable the caching
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Retrieve the {@link RequestCoalescer} in use or null if every request executes its function.
+     * @return the {@link RequestCoalescer} in use or null.
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Install a {@link RequestCoalescer} that lets the concurrent requests for a {@link CacheableFunction} with the
+     * same parameters, from users with the same contract payload, share a single execution. Every requester
+     * receives its own copy of the response. The shared execution is cancelled only when all its requesters are,
+     * and a requester whose shared execution is refused by the bulkhead executes the function itself.
+     *
+     * @param requestCoalescer the {@link RequestCoalescer} to use or null to execute every request
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Retrieve the {@link RateLimiter} in use or null if the requests are not limited.
+     * @return the {@link RateLimiter} in use or null.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Install a {@link RateLimiter} that answers with a throttled response to the users exceeding their limits.
+     *
+     * @param rateLimiter the {@link RateLimiter} to use or null to disable the limits
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Retrieve the {@link MetricsRegistry} in use or null if no metrics are recorded.
+     * @return the {@link MetricsRegistry} in use or null.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Install a {@link MetricsRegistry} that records the executions of the functions.
+     *
+     * @param metricsRegistry the {@link MetricsRegistry} to use or null to disable the metrics
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Append a {@link RequestInterceptor} to the chain that processes every request.
+     *
+     * @param interceptor the {@link RequestInterceptor} to add
+     */
+    public synchronized void addInterceptor(RequestInterceptor interceptor) {
+
+        interceptors.add(interceptor);
+        buildInterceptorChain();
+
+    }
+
+    /**
+     * Remove a {@link RequestInterceptor} from the chain that processes every request.
+     *
+     * @param interceptor the {@link RequestInterceptor} to remove
+     * @return true if the interceptor was in the chain
+     */
+    public synchronized boolean removeInterceptor(RequestInterceptor interceptor) {
+
+        boolean removed = interceptors.remove(interceptor);
+        buildInterceptorChain();
+
+        return removed;
+    }
+
+    /**
+     * Retrieve the {@link RequestInterceptor}s that process every request, in order.
+     * @return an unmodifiable list of the {@link RequestInterceptor}s
+     */
+    public List<RequestInterceptor> getInterceptors() {
+        return Collections.unmodifiableList(interceptors);
+    }
+
+    /*
+     * Link the interceptors once, from the last to the first, so that serving a request only follows references
+     */
+    private void buildInterceptorChain() {
+
+        InterceptorChain chain = this::proceed;
+
+        for (int i = interceptors.size() - 1; i >= 0; i--) {
+
+            final RequestInterceptor interceptor = interceptors.get(i);
+            final InterceptorChain next = chain;
+
+            chain = exchange -> interceptor.intercept(exchange, next);
+
+        }
+
+        interceptorChain = chain;
+
+    }
+
+    /**
+     * Retrieve the time a request can take before being answered with a timeout, or 0 if there is no deadline.
+     * @return the default timeout in milliseconds
+     */
+    public long getDefaultTimeout() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * Set the time a request can take before being answered with a timeout. A function still running when the
+     * deadline passes is cancelled through its {@link RequestContext} and its result is discarded.
+     *
+     * @param timeout the timeout or 0 to disable the deadlines
+     * @param unit the {@link TimeUnit} of the timeout
+     */
+    public void setDefaultTimeout(long timeout, TimeUnit unit) {
+        this.defaultTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Retrieve the maximum number of characters of a chunk of a streamed result.
+     * @return the maximum number of characters of a chunk
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the maximum number of characters of a chunk of the results produced by the {@link StreamingFunction}s.
+     *
+     * @param chunkSize the maximum number of characters of a chunk
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the time in milliseconds the user waits for the response to a request, or 0 if there is no deadline.
+     * Designed to be overridden to honour a timeout supplied by the user: the default implementation returns the
+     * default timeout.
+     *
+     * @param providerRequest the {@link FunctionRequestMessage} received from the User
+     * @return the timeout of the request in milliseconds
+     */
+    protected long getRequestTimeout(FunctionRequestMessage providerRequest) {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * Creates the {@link RequestContext} of a request, starting its deadline. Listeners that queue the requests
+     * create it on reception and bind it to the thread that handles the request, so that the time spent in the
+     * queue counts towards the deadline.
+     *
+     * @param providerRequest the {@link FunctionRequestMessage} received from the User
+     * @return the {@link RequestContext} of the request
+     */
+    public RequestContext createRequestContext(FunctionRequestMessage providerRequest) {
+        return new RequestContext(providerRequest, getRequestTimeout(providerRequest), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the scheduler that enforces the deadlines
+     */
+    protected synchronized void shutdownDeadlineScheduler() {
+
+        if (deadlineScheduler != null) {
+            deadlineScheduler.shutdownNow();
+            deadlineScheduler = null;
+        }
+
+    }
+
     /**
      * Retrieve the {@link Function} related to the {@link FunctionRequestMessage} parameter.
      * @param providerRequest the {@link FunctionRequestMessage} to fetch the function number from.
@@ -88,6 +453,27 @@ public abstract class Core {
      */
     protected abstract Function getFunction(FunctionRequestMessage providerRequest);
 
+    /**
+     * Signal that an execution of a {@link Function} returned by {@link #getFunction(FunctionRequestMessage)} starts.
+     * The default implementation doesn't track the executions.
+     * @param providerRequest the {@link FunctionRequestMessage} to execute.
+     * @param function the {@link Function} that will execute the request.
+     * @return the action to run when the execution completes, or null if the function was replaced meanwhile.
+     */
+    protected Runnable acquireFunction(FunctionRequestMessage providerRequest, Function function) {
+        return NO_RELEASE;
+    }
+
+    /**
+     * Retrieve the {@link Bulkhead} that isolates the executions of the {@link Function} related to the
+     * {@link FunctionRequestMessage} parameter, or null if the function is executed on the calling thread.
+     * @param providerRequest the {@link FunctionRequestMessage} to fetch the function number from.
+     * @return the {@link Bulkhead} of the function or null.
+     */
+    protected Bulkhead getBulkhead(FunctionRequestMessage providerRequest) {
+        return null;
+    }
+
     /**
      * Perform the execution of a {@link Function} related to the {@link FunctionRequestMessage} received.
      *
@@ -98,34 +484,549 @@ public abstract class Core {
      */
     public final FunctionResponseMessage performProviderRequest(final FunctionRequestMessage providerRequest, final byte[] payload) throws Exception {
 
-        FunctionResponseMessage providerResponse = new FunctionResponseMessage();
-        Function function = getFunction(providerRequest);
+        // The synchronous functions complete on the calling thread: this only waits for asynchronous executions
+        return performProviderRequestAsync(providerRequest, payload).toCompletableFuture().get();
+    }
+
+    /**
+     * Perform the asynchronous execution of a {@link Function} related to the {@link FunctionRequestMessage}
+     * received. An {@link AsyncFunction} is completed without blocking the calling thread, while a synchronous
+     * {@link Function} is executed on the calling thread through an {@link AsyncFunctionAdapter}.
+     * If an {@link IdempotencyStore} is installed, a duplicate request receives a copy of the previous response,
+     * unless its function streams the result.
+     * If a {@link RateLimiter} is installed, a user exceeding its limit receives a throttled response.
+     * If a {@link RequestCoalescer} is installed, a request identical to one being executed shares its execution.
+     * A request whose deadline passes receives a timeout response.
+     * The request goes through the {@link RequestInterceptor}s installed, in order, before all of this.
+     *
+     * @param providerRequest the {@link FunctionRequestMessage} received from the User
+     * @param payload the payload from the contract
+     * @return a {@link CompletionStage} that completes with the response to send to the User
+     */
+    public final CompletionStage<FunctionResponseMessage> performProviderRequestAsync(final FunctionRequestMessage providerRequest,
+                                                                                      final byte[] payload) {
+
+        return performProviderRequestAsync(providerRequest, payload, true);
+    }
+
+    /**
+     * Perform the asynchronous execution of a {@link Function} like
+     * {@link #performProviderRequestAsync(FunctionRequestMessage, byte[])}, optionally bypassing the
+     * {@link IdempotencyStore}. Requests that are not identified by their own id, like the entries of a batch, must
+     * not be deduplicated.
+     *
+     * @param providerRequest the {@link FunctionRequestMessage} received from the User
+     * @param payload the payload from the contract
+     * @param deduplicate false to execute the request even if its id was already seen
+     * @return a {@link CompletionStage} that completes with the response to send to the User
+     */
+    public final CompletionStage<FunctionResponseMessage> performProviderRequestAsync(final FunctionRequestMessage providerRequest,
+                                                                                      final byte[] payload,
+                                                                                      final boolean deduplicate) {
+
+        ProviderExchange exchange = new ProviderExchange(this, providerRequest, payload, deduplicate);
 
         try {
 
-            if (function != null) {
-                try {
-                    function.service(providerRequest, providerResponse, payload);
-                    providerResponse.setError(FunctionResponseMessage.RESULT_OK);
+            return interceptorChain.proceed(exchange);
 
-                } catch (Exception ex) {
-                    LOGGER.error("Error while executing function", ex);
-                    providerResponse.setError(FunctionResponseMessage.RESULT_ERROR);
-                    providerResponse.setResult("Error while executing function: " + ex.getMessage());
+        } catch (RuntimeException ex) {
 
-                }
+            CompletableFuture<FunctionResponseMessage> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+
+            return failed;
+
+        }
+
+    }
+
+    /*
+     * The end of the interceptor chain: rate limit, deduplicate and execute the request
+     */
+    private CompletionStage<FunctionResponseMessage> proceed(final ProviderExchange exchange) {
+
+        final FunctionRequestMessage providerRequest = exchange.getRequest();
+
+        long start = System.nanoTime();
+
+        RateLimiter limiter = rateLimiter;
+
+        if (limiter != null && !limiter.tryAcquire(providerRequest.getUser(), providerRequest.getFunction())) {
+
+            LOGGER.debug("User {} throttled on function {}", providerRequest.getUser(), providerRequest.getFunction());
+
+            FunctionResponseMessage providerResponse = new FunctionResponseMessage();
+            providerResponse.setError(ResponseCodes.RESULT_THROTTLED);
+            providerResponse.setResult("Rate limit exceeded");
+            populateProvider(providerRequest, providerResponse);
+
+            exchange.recordStage(ProviderExchange.Stage.RATE_LIMIT, System.nanoTime() - start);
+
+            MetricsRegistry metrics = metricsRegistry;
+            if (metrics != null) {
+                metrics.recordThrottled(providerRequest.getFunction());
+            }
+
+            return CompletableFuture.completedFuture(providerResponse);
+
+        }
+
+        exchange.recordStage(ProviderExchange.Stage.RATE_LIMIT, System.nanoTime() - start);
+
+        final IdempotencyStore store = exchange.isDeduplicated() ? idempotencyStore : null;
+
+        // Only the last chunk of a streamed result would be replayed: a duplicate is executed again
+        if (store == null || getFunction(providerRequest) instanceof StreamingFunction) {
+            return execute(exchange);
+        }
+
+        start = System.nanoTime();
+
+        CompletableFuture<FunctionResponseMessage> pending = new CompletableFuture<>();
+        CompletableFuture<FunctionResponseMessage> previous = store.register(providerRequest, pending);
+
+        exchange.recordStage(ProviderExchange.Stage.IDEMPOTENCY, System.nanoTime() - start);
+
+        if (previous != null) {
+
+            LOGGER.debug("Duplicate request {} from {}: answering with the previous response", providerRequest.getId(),
+                    providerRequest.getUser());
+
+            return previous.thenApply(IdempotencyStore::copy);
+
+        }
+
+        execute(exchange).whenComplete((response, throwable) -> {
+
+            // A refused execution didn't run the function: let the user retry
+            if (throwable != null || response.getError() == ResponseCodes.RESULT_BUSY
+                    || response.getError() == ResponseCodes.RESULT_TIMEOUT) {
+                store.discard(providerRequest);
+            }
+
+            if (throwable != null) {
+                pending.completeExceptionally(throwable);
             } else {
-                providerResponse.setError(FunctionResponseMessage.RESULT_FUNCTION_NOT_AVAILABLE);
-                providerResponse.setResult("Function not available");
+                pending.complete(response);
+            }
+
+        });
+
+        return pending.thenApply(IdempotencyStore::copy);
+    }
+
+    /*
+     * Execute the function related to the request, inside its bulkhead if any
+     */
+    private CompletionStage<FunctionResponseMessage> execute(final ProviderExchange exchange) {
+
+        final FunctionRequestMessage providerRequest = exchange.getRequest();
+        final byte[] payload = exchange.getPayload();
+
+        final long start = System.nanoTime();
+
+        Function function;
+        Runnable acquired;
+
+        // Look up again a function replaced between its lookup and the start of the execution
+        do {
+
+            function = getFunction(providerRequest);
+            acquired = function != null ? acquireFunction(providerRequest, function) : null;
+
+        } while (function != null && acquired == null);
+
+        if (function == null) {
+
+            FunctionResponseMessage providerResponse = new FunctionResponseMessage();
+            providerResponse.setError(FunctionResponseMessage.RESULT_FUNCTION_NOT_AVAILABLE);
+            providerResponse.setResult("Function not available");
+            populateProvider(providerRequest, providerResponse);
+            recordExecution(exchange, start, providerResponse);
+
+            return CompletableFuture.completedFuture(providerResponse);
+
+        }
+
+        // Run when the function is no longer used by this request
+        final Runnable release = acquired;
+
+        // A streamed result is not held in a single response: it can't be cached nor shared
+        final CacheableFunction readOnly = function instanceof CacheableFunction
+                && !(function instanceof StreamingFunction) ? (CacheableFunction) function : null;
+
+        final ResultCache cache = resultCache;
+        final CacheableFunction cacheable = cache != null ? readOnly : null;
+
+        if (cacheable != null) {
+
+            long lookup = System.nanoTime();
+
+            FunctionResponseMessage cachedResponse = cache.get(cacheable, providerRequest, payload);
+
+            exchange.recordStage(ProviderExchange.Stage.CACHE, System.nanoTime() - lookup);
+
+            if (cachedResponse != null) {
+
+                release.run();
+
+                populateProvider(providerRequest, cachedResponse);
+                recordExecution(exchange, start, cachedResponse);
+
+                return CompletableFuture.completedFuture(cachedResponse);
+
+            }
+
+        }
+
+        final RequestContext context = getRequestContext(providerRequest);
+
+        if (context.isExpired()) {
+
+            // The user is no longer waiting: don't execute the function
+            CompletableFuture<FunctionResponseMessage> expired = new CompletableFuture<>();
+            expired.completeExceptionally(new TimeoutException("Deadline expired before execution"));
+
+            release.run();
+
+            return complete(exchange, start, expired, null, null);
+
+        }
+
+        final RequestCoalescer coalescer = requestCoalescer;
+        SharedExecution candidate = coalescer != null && readOnly != null ? new SharedExecution(providerRequest) : null;
+
+        if (candidate != null) {
+
+            SharedExecution running = (SharedExecution) coalescer.join(readOnly, providerRequest, payload, candidate);
+
+            if (running != null && running.enter()) {
+
+                release.run();
+
+                LOGGER.debug("Request {} from {} joins the execution of an identical request", providerRequest.getId(),
+                        providerRequest.getUser());
+
+                return join(exchange, start, context, running);
 
             }
+
+            if (running != null) {
+                // Every request sharing the running execution is cancelled: don't wait for its outcome
+                candidate = null;
+            }
+
+        }
+
+        final SharedExecution execution = candidate;
+        final CacheableFunction coalescable = execution != null ? readOnly : null;
+
+        // A shared execution is not cancelled by the deadline of this request alone
+        final RequestContext executionContext = execution != null ? execution.context : context;
+
+        final AsyncFunction asyncFunction = function instanceof StreamingFunction
+                ? new StreamingFunctionAdapter((StreamingFunction) function, createChunkSink(providerRequest, context),
+                        chunkSize)
+                : AsyncFunctionAdapter.adapt(function);
+        Bulkhead bulkhead = getBulkhead(providerRequest);
+
+        CompletionStage<FunctionResponseMessage> stage;
+
+        if (bulkhead != null) {
+
+            stage = bulkhead.submit(() -> serviceAsync(asyncFunction, executionContext, payload));
+
+        } else {
+
+            stage = serviceAsync(asyncFunction, executionContext, payload);
+
+        }
+
+        stage.whenComplete((response, throwable) -> release.run());
+
+        if (execution != null) {
+
+            stage.whenComplete((response, throwable) -> {
+
+                // Requests arriving from now on execute the function again or find its result in the cache
+                coalescer.release(coalescable, providerRequest, payload, execution);
+
+                if (throwable != null) {
+                    execution.completeExceptionally(throwable);
+                } else {
+                    execution.complete(response);
+                }
+
+            });
+
+            // The requests that joined modify their own copy: this one too
+            stage = execution.thenApply(IdempotencyStore::copy);
+
+        }
+
+        if (context.hasDeadline()) {
+            stage = withDeadline(stage, context, execution);
+        }
+
+        return complete(exchange, start, stage, cache, cacheable);
+
+    }
+
+    /*
+     * Answer a request with a copy of the outcome of an identical request's execution. If that execution is
+     * refused, the request executes the function itself: a busy response is only for the request that was refused.
+     */
+    private CompletionStage<FunctionResponseMessage> join(final ProviderExchange exchange, final long start,
+                                                          final RequestContext context,
+                                                          final SharedExecution running) {
+
+        CompletionStage<FunctionResponseMessage> shared = running.thenApply(IdempotencyStore::copy);
+
+        if (context.hasDeadline()) {
+            shared = withDeadline(shared, context, running);
+        }
+
+        final CompletionStage<FunctionResponseMessage> joined = shared;
+
+        return joined.handle((response, throwable) -> throwable != null
+                && (throwable instanceof RejectedExecutionException
+                || throwable.getCause() instanceof RejectedExecutionException)).thenCompose(refused -> {
+
+            if (!refused) {
+                return complete(exchange, start, joined, null, null);
+            }
+
+            LOGGER.debug("Execution shared by request {} from {} refused: executing again",
+                    exchange.getRequest().getId(), exchange.getRequest().getUser());
+
+            RequestContext previous = RequestContext.attach(context);
+
+            try {
+
+                return execute(exchange);
+
+            } finally {
+                RequestContext.restore(previous);
+            }
+
+        });
+
+    }
+
+    /*
+     * Start the function with the request context bound to the current thread
+     */
+    private static CompletionStage<FunctionResponseMessage> serviceAsync(AsyncFunction asyncFunction,
+                                                                         RequestContext context, byte[] payload) {
+
+        if (context.isCancelled()) {
+
+            CompletableFuture<FunctionResponseMessage> expired = new CompletableFuture<>();
+            expired.completeExceptionally(new TimeoutException("Deadline expired before execution"));
+
+            return expired;
+
+        }
+
+        RequestContext previous = RequestContext.attach(context);
+
+        try {
+
+            return asyncFunction.serviceAsync(context.getRequest(), payload);
+
+        } catch (Exception ex) {
+
+            CompletableFuture<FunctionResponseMessage> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+
+            return failed;
+
         } finally {
-            // Populate all missing parameters...
-            ProviderChannel providerChannel = getProvider(providerRequest);
-            providerResponse.setProvider(providerChannel.getProviderAddress());
+            RequestContext.restore(previous);
+        }
+
+    }
+
+    /*
+     * Complete exceptionally with a TimeoutException and cancel the request when the deadline passes, leaving the
+     * shared execution, if any
+     */
+    private CompletionStage<FunctionResponseMessage> withDeadline(CompletionStage<FunctionResponseMessage> stage,
+                                                                  final RequestContext context,
+                                                                  final SharedExecution execution) {
+
+        final CompletableFuture<FunctionResponseMessage> timed = new CompletableFuture<>();
+
+        final ScheduledFuture<?> timer = getDeadlineScheduler().schedule(() -> {
+
+            context.cancel();
+
+            if (execution != null) {
+                execution.leave();
+            }
+
+            timed.completeExceptionally(new TimeoutException("Deadline expired"));
+
+        }, context.getRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+        stage.whenComplete((response, throwable) -> {
+
+            timer.cancel(false);
+
+            if (throwable != null) {
+                timed.completeExceptionally(throwable);
+            } else if (context.isCancelled()) {
+                // A result produced after the deadline is discarded
+                timed.completeExceptionally(new TimeoutException("Deadline expired"));
+            } else {
+                timed.complete(response);
+            }
+
+        });
+
+        return timed;
+    }
+
+    /*
+     * Map the outcome of the execution to the response to send
+     */
+    private CompletionStage<FunctionResponseMessage> complete(final ProviderExchange exchange,
+                                                              final long start,
+                                                              CompletionStage<FunctionResponseMessage> stage,
+                                                              final ResultCache cache,
+                                                              final CacheableFunction cacheable) {
+
+        final FunctionRequestMessage providerRequest = exchange.getRequest();
+
+        return stage.handle((response, throwable) -> {
+
+            FunctionResponseMessage providerResponse = response != null ? response : new FunctionResponseMessage();
+
+            if (throwable == null) {
+
+                providerResponse.setError(FunctionResponseMessage.RESULT_OK);
+
+                if (cacheable != null) {
+                    cache.put(cacheable, providerRequest, exchange.getPayload(), providerResponse);
+                }
+
+            } else {
+
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+
+                if (cause instanceof RejectedExecutionException) {
+
+                    LOGGER.warn("Function {} busy: request refused", providerRequest.getFunction());
+                    providerResponse.setError(ResponseCodes.RESULT_BUSY);
+                    providerResponse.setResult("Function busy");
+
+                } else if (cause instanceof TimeoutException) {
+
+                    LOGGER.warn("Function {} timed out: {}", providerRequest.getFunction(), cause.getMessage());
+                    providerResponse.setError(ResponseCodes.RESULT_TIMEOUT);
+                    providerResponse.setResult("Function timed out");
+
+                } else {
+
+                    LOGGER.error("Error while executing function", cause);
+                    providerResponse.setError(FunctionResponseMessage.RESULT_ERROR);
+                    providerResponse.setResult("Error while executing function: " + cause.getMessage());
+
+                }
+
+            }
+
+            populateProvider(providerRequest, providerResponse);
+            recordExecution(exchange, start, providerResponse);
+
+            return providerResponse;
+        });
+
+    }
+
+    /*
+     * Record the duration and the outcome of an execution in the exchange and in the metrics, if any
+     */
+    private void recordExecution(ProviderExchange exchange, long start, FunctionResponseMessage providerResponse) {
+
+        long nanos = System.nanoTime() - start;
+
+        exchange.recordStage(ProviderExchange.Stage.EXECUTION, nanos);
+
+        MetricsRegistry metrics = metricsRegistry;
+
+        if (metrics != null) {
+            metrics.recordExecution(exchange.getRequest().getFunction(), nanos, providerResponse.getError());
+        }
+
+    }
+
+    /*
+     * Returns the consumer that sends the chunks of a streamed result, or null if the listener can't send them
+     */
+    private Consumer<FunctionResponseMessage> createChunkSink(final FunctionRequestMessage providerRequest,
+                                                              RequestContext context) {
+
+        final Consumer<FunctionResponseMessage> sink = context.getResponseSink();
+
+        if (sink == null) {
+            return null;
+        }
+
+        return chunk -> {
+            populateProvider(providerRequest, chunk);
+            sink.accept(chunk);
+        };
+    }
+
+    /*
+     * Returns the context bound to the current thread for the request or a new one
+     */
+    private RequestContext getRequestContext(FunctionRequestMessage providerRequest) {
+
+        RequestContext context = RequestContext.current();
+
+        if (context != null && context.getRequest() == providerRequest) {
+            return context;
+        }
+
+        return createRequestContext(providerRequest);
+    }
+
+    private synchronized ScheduledExecutorService getDeadlineScheduler() {
+
+        if (deadlineScheduler == null) {
+
+            // The timer only completes futures: it doesn't need the bitcoinj context
+            deadlineScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "deadlineScheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        }
+
+        return deadlineScheduler;
+    }
+
+    /*
+     * Populate the provider address of the response from the contract of the user
+     */
+    private void populateProvider(FunctionRequestMessage providerRequest, FunctionResponseMessage providerResponse) {
+
+        try {
+
+            ContractPermission permission = getPermission(providerRequest.getUser());
+            if (permission != null) {
+                providerResponse.setProvider(permission.getProviderAddress());
+            }
+
+        } catch (RegisterException ex) {
+            LOGGER.error("Error while retrieving provider address", ex);
         }
 
-        return providerResponse;
     }
 
     public ProviderChannel getProvider(FunctionRequestMessage providerRequest) throws Exception {
@@ -138,6 +1039,42 @@ public abstract class Core {
         return providerRegister.getChannelByUserAddress(sender);
     }
 
+    /**
+     * Retrieve the {@link ContractPermission} of a user from the {@link AuthorizationTable}. If the user is not
+     * present in the table and is not rejected by the {@link SenderFilter}, the {@link ProviderRegister} is
+     * queried and the result is cached.
+     *
+     * @param userAddress the address of the user
+     * @return the {@link ContractPermission} of the user or null if no contract exists
+     * @throws RegisterException in case a problem occurs.
+     */
+    public ContractPermission getPermission(String userAddress) throws RegisterException {
+
+        ContractPermission permission = authorizationTable.get(userAddress);
+
+        if (permission == null && userAddress != null) {
+
+            SenderFilter filter = senderFilter;
+
+            if (filter != null && filter.reject(userAddress)) {
+                return null;
+            }
+
+            long generation = authorizationTable.getGeneration();
+
+            ProviderChannel providerChannel = registerFactory.getProviderRegister().getChannelByUserAddress(userAddress);
+
+            if (providerChannel != null) {
+                permission = authorizationTable.putIfCurrent(providerChannel, generation);
+            } else if (filter != null) {
+                filter.senderUnknown(userAddress);
+            }
+
+        }
+
+        return permission;
+    }
+
     /**
      * Check if sender is authorized and return the byte array present in the Smart Contract
      *
@@ -148,6 +1085,12 @@ public abstract class Core {
      */
     public final byte[] getBitmask(ProviderChannel providerChannel, int function) throws Exception {
 
+        if (providerChannel == null) {
+
+            throw new Exception("Sender not found in Provider register!");
+
+        }
+
         // Check if there is a channel available and dates are valid
         if (!providerChannel.isValid()) {
 
@@ -198,4 +1141,50 @@ public abstract class Core {
 
     }
 
+    /*
+     * The execution of a function shared by identical requests. It runs under its own context, without a deadline,
+     * cancelled only when every request sharing it is cancelled.
+     */
+    private static final class SharedExecution extends CompletableFuture<FunctionResponseMessage> {
+
+        private final RequestContext context;
+        private final AtomicInteger participants = new AtomicInteger(1);
+
+        private SharedExecution(FunctionRequestMessage request) {
+            this.context = new RequestContext(request, 0, TimeUnit.MILLISECONDS);
+        }
+
+        /*
+         * Share the execution with one more request. Returns false if the execution is cancelled.
+         */
+        private boolean enter() {
+
+            int current;
+
+            do {
+
+                current = participants.get();
+
+                if (current == 0) {
+                    return false;
+                }
+
+            } while (!participants.compareAndSet(current, current + 1));
+
+            return true;
+        }
+
+        /*
+         * A request sharing the execution is cancelled: the last one cancels the execution
+         */
+        private void leave() {
+
+            if (participants.decrementAndGet() == 0) {
+                context.cancel();
+            }
+
+        }
+
+    }
+
 }
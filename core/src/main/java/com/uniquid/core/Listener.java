@@ -11,12 +11,31 @@ import com.uniquid.connector.Connector;
 import com.uniquid.connector.ConnectorException;
 import com.uniquid.connector.EndPoint;
 import com.uniquid.connector.impl.MQTTConnector;
+import com.uniquid.core.auth.ContractPermission;
+import com.uniquid.core.impl.AdmissionController;
+import com.uniquid.core.impl.KeyedExecutor;
+import com.uniquid.core.impl.PriorityLanes;
+import com.uniquid.core.impl.ResponseWriter;
 import com.uniquid.core.impl.UniquidSimplifier;
+import com.uniquid.core.metrics.MetricsRegistry;
+import com.uniquid.core.provider.RequestContext;
+import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.messages.MessageType;
 import com.uniquid.messages.UniquidMessage;
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
 public class Listener implements Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Listener.class.getName());
@@ -26,10 +45,40 @@ public class Listener implements Runnable {
     private MessageHandler handler;
     private UniquidSimplifier parentSimplifier;
 
+    private int workerThreads;
+    private int queueCapacity;
+    private int maxFlushBatch;
+    private AdmissionController admissionController;
+    private int[] laneWeights = PriorityLanes.defaultWeights();
+    private int maxQueuedPerUser;
+    private volatile long connectedSince;
+    private volatile long drainTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Supplier<Connector> connectorSupplier;
+
+    // Guards the interruption of the thread waiting for a message
+    private final Object acceptLock = new Object();
+    private Thread acceptingThread;
+    private volatile boolean stopped;
+
     public Listener(String broker, String topic, MessageHandler handler) {
         this.broker = broker;
         this.topic = topic;
         this.handler = handler;
+        this.connectorSupplier = () -> new MQTTConnector(this.broker, this.topic);
+    }
+
+    private Listener(Builder builder) {
+        this(builder.broker, builder.topic, builder.handler);
+        if (builder.connectorSupplier != null) {
+            this.connectorSupplier = builder.connectorSupplier;
+        }
+        this.workerThreads = builder.workerThreads;
+        this.queueCapacity = builder.queueCapacity;
+        this.maxFlushBatch = builder.maxFlushBatch;
+        this.admissionController = builder.admissionController;
+        this.laneWeights = builder.laneWeights.clone();
+        this.maxQueuedPerUser = builder.maxQueuedPerUser;
     }
 
     public void setParentSimplifier(UniquidSimplifier parent) {
@@ -38,40 +87,823 @@ public class Listener implements Runnable {
 
     @Override
     public void run() {
+
+        try {
+
+            serve();
+
+        } catch (InterruptedException e) {
+            LOGGER.error("Received request to stop. Exiting");
+            // since flag value is not used here, restore it to check the flag later and have it be true
+            Thread.currentThread().interrupt();
+
+        } catch (ConnectorException e) {
+            LOGGER.error("Connection problem. MQTTConnector throw exception ", e);
+
+        }
+    }
+
+    /**
+     * Open a new {@link Connector}, by default connecting to the broker and subscribing to the topic, and handle
+     * the messages until the thread is interrupted
+     *
+     * @throws ConnectorException if the connection can't be established or is lost
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void serve() throws ConnectorException, InterruptedException {
         // start connector
-        try (Connector connector = new MQTTConnector(broker, topic)) {
+        try (Connector connector = connectorSupplier.get()) {
 
             // start connection
             connector.connect();
 
-            // until not interrupted
-            while (!Thread.currentThread().isInterrupted()) {
-                LOGGER.info("Wait to receive request...");
+            connectedSince = System.currentTimeMillis();
+
+            try {
+
+                if (workerThreads > 0) {
+                    runPipelined(connector);
+                } else {
+                    runInline(connector);
+                }
+
+            } finally {
+                connectedSince = 0;
+            }
+
+        }
+    }
+
+    /**
+     * Stop accepting messages: {@link #serve()} completes the messages in flight, flushes their responses and
+     * returns. Only a thread waiting for a message is interrupted, never one handling a message. A stopped listener
+     * doesn't serve again.
+     */
+    public void stop() {
+
+        synchronized (acceptLock) {
+
+            stopped = true;
+
+            if (acceptingThread != null) {
+                acceptingThread.interrupt();
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns true if the listener was stopped
+     * @return true if the listener was stopped
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the time at which the current connection was established, or 0 if the listener is not connected
+     * @return the time in milliseconds at which the listener connected or 0
+     */
+    public long getConnectedSince() {
+        return connectedSince;
+    }
+
+    /**
+     * Set how long the listener waits, once it stops accepting messages, for the messages in flight to complete
+     * and their responses to be flushed
+     *
+     * @param timeout the maximum wait
+     * @param unit the {@link TimeUnit} of the timeout
+     */
+    public void setDrainTimeout(long timeout, TimeUnit unit) {
+        this.drainTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Returns the number of messages accepted whose response is not yet flushed
+     * @return the number of messages in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the topic the listener subscribes to
+     * @return the topic of the listener
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    /*
+     * Handle every message on the thread that accepts them
+     */
+    private void runInline(Connector connector) throws ConnectorException, InterruptedException {
+
+        final MetricsRegistry metrics = getMetricsRegistry();
+
+        try {
+
+            acceptInline(connector, metrics);
+
+        } finally {
+
+            // Let the asynchronous executions complete and flush their responses
+            boolean interrupted = Thread.interrupted();
+
+            awaitInFlight(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis));
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+        }
+
+    }
+
+    private void acceptInline(Connector connector, final MetricsRegistry metrics)
+            throws ConnectorException, InterruptedException {
+
+        // until not interrupted
+        while (!Thread.currentThread().isInterrupted()) {
+            LOGGER.info("Wait to receive request...");
+
+            if (!beginAccept()) {
+                break;
+            }
+
+            EndPoint endPoint;
+
+            try {
 
                 // this will block until a message is received
-                EndPoint endPoint = connector.accept();
+                endPoint = connector.accept();
+
+            } catch (InterruptedException e) {
+
+                if (stopped) {
+                    break;
+                }
+
+                throw e;
+
+            } finally {
+                endAccept();
+            }
+
+            UniquidMessage request = endPoint.getRequest();
+            if (request != null) {
+                LOGGER.info("Received {} message!", request.getMessageType());
+
+                syncOnAnnounce(request);
+
+                RequestContext context = createRequestContext(request);
+                if (context != null) {
+                    // Chunks of streamed results are flushed as they are produced
+                    context.setResponseSink(chunk -> flush(endPoint, chunk, null, metrics));
+                }
+
+                CompletableFuture<FunctionResponseMessage> future;
+
+                RequestContext previous = RequestContext.attach(context);
+
+                try {
 
-                UniquidMessage request = endPoint.getRequest();
-                if (request != null) {
-                    LOGGER.info("Received {} message!", request.getMessageType());
+                    future = handler.handleMessageAsync(parentSimplifier, request).toCompletableFuture();
 
-                    FunctionResponseMessage response = handler.handleMessage(parentSimplifier, request);
+                } finally {
+                    RequestContext.restore(previous);
+                }
+
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+
+                    FunctionResponseMessage response = future.join();
                     if (response != null) {
+                        long start = System.nanoTime();
                         endPoint.setResponse(response);
                         endPoint.flush();
+                        ResponseWriter.recordFlush(metrics, endPoint, start);
                     }
+
+                } else {
+
+                    // An asynchronous function is still running: flush when it completes
+                    inFlight.incrementAndGet();
+                    future.whenComplete((response, throwable) -> {
+                        flush(endPoint, response, throwable, metrics);
+                        finished(null);
+                    });
+
                 }
+            }
+
+        }
+
+    }
 
+    /*
+     * Accept messages on this thread, handle them on a pool of workers and flush the responses from a writer thread.
+     * The messages wait for a worker in priority lanes: the executor only receives the order to run the next one.
+     */
+    private void runPipelined(Connector connector) throws ConnectorException, InterruptedException {
+
+        // A full queue refuses the order to run a message: see dispatch
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ContextPropagatingThreadFactory("listenerWorker"));
+
+        final Thread acceptor = Thread.currentThread();
+
+        final PriorityLanes lanes = new PriorityLanes(laneWeights);
+
+        // Only dispatches to the lanes: the requests run on the workers
+        final KeyedExecutor ordered = maxQueuedPerUser > 0 ? new KeyedExecutor(Runnable::run, maxQueuedPerUser) : null;
+
+        final MetricsRegistry metrics = getMetricsRegistry();
+
+        ResponseWriter writer = new ResponseWriter(maxFlushBatch, metrics);
+        Thread writerThread = new ContextPropagatingThreadFactory("listenerWriter").newThread(writer);
+        writerThread.start();
+
+        if (metrics != null) {
+            metrics.registerGauge("listener." + topic + ".workerQueue", () -> workers.getQueue().size());
+            metrics.registerGauge("listener." + topic + ".activeWorkers", workers::getActiveCount);
+            metrics.registerGauge("listener." + topic + ".writerQueue", writer::getPendingCount);
+            for (PriorityLanes.Lane lane : PriorityLanes.Lane.values()) {
+                metrics.registerGauge(getLaneGauge(lane), () -> lanes.getPendingCount(lane));
+            }
+            if (ordered != null) {
+                metrics.registerGauge("listener." + topic + ".orderedUsers", ordered::getActiveKeyCount);
+                metrics.registerGauge("listener." + topic + ".orderedQueue", ordered::getQueuedCount);
             }
+        }
 
-        } catch (InterruptedException e) {
-            LOGGER.error("Received request to stop. Exiting");
-            // since flag value is not used here, restore it to check the flag later and have it be true
-            Thread.currentThread().interrupt();
+        final AdmissionController admission = admissionController;
 
-        } catch (ConnectorException e) {
-            LOGGER.error("Connection problem. MQTTConnector throw exception ", e);
+        try {
+
+            // until not interrupted
+            while (!Thread.currentThread().isInterrupted()) {
+
+                if (!beginAccept()) {
+                    break;
+                }
+
+                EndPoint accepted = null;
+
+                try {
+
+                    if (admission != null) {
+                        // Stop reading from the connector while too many messages are in flight
+                        admission.acquire();
+                    }
+
+                    try {
+
+                        // this will block until a message is received
+                        accepted = connector.accept();
+
+                    } finally {
+
+                        if (accepted == null || accepted.getRequest() == null) {
+                            release(admission);
+                        }
+
+                    }
+
+                } catch (InterruptedException e) {
+
+                    if (stopped) {
+                        break;
+                    }
+
+                    throw e;
+
+                } finally {
+                    endAccept();
+                }
+
+                final EndPoint endPoint = accepted;
+                final UniquidMessage request = endPoint.getRequest();
+                if (request == null) {
+                    continue;
+                }
+
+                LOGGER.debug("Received {} message!", request.getMessageType());
+
+                syncOnAnnounce(request);
+
+                final long enqueued = System.nanoTime();
+
+                inFlight.incrementAndGet();
+
+                // The deadline of a request starts on reception
+                final RequestContext context = createRequestContext(request);
+                if (context != null) {
+                    // Chunks of streamed results are queued to the writer as they are produced
+                    context.setResponseSink(chunk -> writer.write(endPoint, chunk));
+                }
+
+                final Supplier<CompletionStage<?>> task = () -> {
+
+                    RequestContext previous = RequestContext.attach(context);
+
+                    try {
+
+                        if (context != null && context.isExpired()) {
+
+                            LOGGER.warn("Request expired while queued: skipped");
+                            writer.write(endPoint, createTimeoutResponse());
+                            finished(admission);
+                            return CompletableFuture.completedFuture(null);
+
+                        }
+
+                        // Control messages are never shed
+                        if (admission != null && MessageType.FUNCTION_REQUEST.equals(request.getMessageType())
+                                && admission.shouldShed(enqueued)) {
+
+                            LOGGER.warn("Provider overloaded: request shed");
+                            writer.write(endPoint, createOverloadedResponse());
+                            finished(admission);
+                            return CompletableFuture.completedFuture(null);
+
+                        }
+
+                        return handler.handleMessageAsync(parentSimplifier, request).whenComplete((response, throwable) -> {
+
+                            try {
+
+                                if (throwable != null) {
+                                    LOGGER.error("Error while handling message", throwable);
+                                } else if (response != null) {
+                                    writer.write(endPoint, response);
+                                }
+
+                            } finally {
+                                // A lost permit would lower the messages in flight forever
+                                finished(admission);
+                            }
+
+                        });
+
+                    } catch (Exception e) {
+                        LOGGER.error("Error while handling message", e);
+                        finished(admission);
+                        return CompletableFuture.completedFuture(null);
+                    } finally {
+                        RequestContext.restore(previous);
+                    }
+
+                };
+
+                final Runnable refusal = () -> {
+                    LOGGER.warn("No worker available: request refused");
+                    writer.write(endPoint, createOverloadedResponse());
+                    finished(admission);
+                };
+
+                final PriorityLanes.Lane lane = getLane(request);
+                final String user = MessageType.FUNCTION_REQUEST.equals(request.getMessageType())
+                        ? ((FunctionRequestMessage) request).getUser() : null;
+
+                if (ordered != null && user != null) {
+
+                    // The next request of the user is dispatched when this one completes
+                    boolean queued = ordered.submit(user, () -> {
+
+                        CompletableFuture<Object> completion = new CompletableFuture<>();
+
+                        lanes.submit(lane, new Dispatch(
+                                () -> task.get().whenComplete((result, throwable) -> completion.complete(null)),
+                                () -> {
+                                    try {
+                                        refusal.run();
+                                    } finally {
+                                        completion.complete(null);
+                                    }
+                                }));
+
+                        // Also called on the thread that completed the previous request of the user
+                        dispatch(workers, lanes, Thread.currentThread() == acceptor);
+
+                        return completion;
+
+                    }, refusal);
 
+                    if (!queued) {
+
+                        LOGGER.warn("Too many requests queued for user: request refused");
+                        writer.write(endPoint, createOverloadedResponse());
+                        finished(admission);
+
+                    }
+
+                } else {
+
+                    lanes.submit(lane, new Dispatch(task::get, refusal));
+                    dispatch(workers, lanes, true);
+
+                }
+
+            }
+
+        } finally {
+
+            // Stopped accepting: complete the messages in flight and flush their responses before the deadline
+            boolean interrupted = Thread.interrupted();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+
+            // The requests queued for a user reach the workers only when the previous one completes: drain them
+            // before the workers stop taking orders
+            awaitInFlight(deadline);
+
+            workers.shutdown();
+            workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+            writer.stop();
+            writerThread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+
+            if (!workers.isTerminated() || inFlight.get() > 0) {
+                LOGGER.warn("Listener on topic {} stopped with {} messages in flight", topic, inFlight.get());
+                workers.shutdownNow();
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (metrics != null) {
+                metrics.removeGauge("listener." + topic + ".workerQueue");
+                metrics.removeGauge("listener." + topic + ".activeWorkers");
+                metrics.removeGauge("listener." + topic + ".writerQueue");
+                for (PriorityLanes.Lane lane : PriorityLanes.Lane.values()) {
+                    metrics.removeGauge(getLaneGauge(lane));
+                }
+                metrics.removeGauge("listener." + topic + ".orderedUsers");
+                metrics.removeGauge("listener." + topic + ".orderedQueue");
+            }
+
+        }
+
+    }
+
+    /*
+     * Order a worker to run the next message of the lanes. When the workers refuse the order the accepting thread,
+     * if callerRuns, runs the message itself, slowing down the reads; any other thread refuses the message, so that a
+     * function never runs on the thread that completed the previous one.
+     */
+    private static void dispatch(ThreadPoolExecutor workers, PriorityLanes lanes, boolean callerRuns) {
+
+        try {
+
+            workers.execute(lanes::runNext);
+
+        } catch (RejectedExecutionException e) {
+
+            // One message is left without an order to run it
+            Runnable next = lanes.poll();
+
+            if (next == null) {
+                return;
+            }
+
+            if (callerRuns && !workers.isShutdown()) {
+                next.run();
+            } else {
+                ((Dispatch) next).refuse();
+            }
+
+        }
+
+    }
+
+    /*
+     * A message waiting in the lanes: run by a worker or refused when no worker can take it
+     */
+    private static final class Dispatch implements Runnable {
+
+        private final Runnable task;
+        private final Runnable refusal;
+
+        private Dispatch(Runnable task, Runnable refusal) {
+            this.task = task;
+            this.refusal = refusal;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        private void refuse() {
+            refusal.run();
+        }
+
+    }
+
+    /*
+     * Mark the current thread as waiting for a message, the only wait stop() interrupts. Returns false if the
+     * listener is stopped.
+     */
+    private boolean beginAccept() {
+
+        synchronized (acceptLock) {
+
+            if (stopped) {
+                return false;
+            }
+
+            acceptingThread = Thread.currentThread();
+
+            return true;
+        }
+
+    }
+
+    /*
+     * The current thread stopped waiting for a message: an interrupt from stop() must not reach the handling
+     */
+    private void endAccept() {
+
+        synchronized (acceptLock) {
+
+            acceptingThread = null;
+
+            if (stopped) {
+                Thread.interrupted();
+            }
+
+        }
+
+    }
+
+    /*
+     * Choose the lane of a message. The owner lane is chosen only for users already in the authorization table:
+     * the accepting thread never queries the register.
+     */
+    private PriorityLanes.Lane getLane(UniquidMessage request) {
+
+        switch (request.getMessageType()) {
+
+            case UNIQUID_CAPABILITY:
+                return PriorityLanes.Lane.CAPABILITY;
+
+            case ANNOUNCE:
+                return PriorityLanes.Lane.ANNOUNCE;
+
+            case FUNCTION_REQUEST:
+                if (parentSimplifier != null) {
+                    ContractPermission permission = parentSimplifier.getAuthorizationTable()
+                            .get(((FunctionRequestMessage) request).getUser());
+                    if (permission != null && permission.isOwner()) {
+                        return PriorityLanes.Lane.OWNER;
+                    }
+                }
+                return PriorityLanes.Lane.REQUEST;
+
+            default:
+                return PriorityLanes.Lane.REQUEST;
+
+        }
+
+    }
+
+    private String getLaneGauge(PriorityLanes.Lane lane) {
+        return "listener." + topic + ".lane." + lane.name().toLowerCase();
+    }
+
+    /*
+     * Create the context of a function request
+     */
+    private RequestContext createRequestContext(UniquidMessage request) {
+
+        if (parentSimplifier == null || !MessageType.FUNCTION_REQUEST.equals(request.getMessageType())) {
+            return null;
+        }
+
+        return parentSimplifier.createRequestContext((FunctionRequestMessage) request);
+    }
+
+    /*
+     * A node announced itself: its contracts will soon be on the blockchain
+     */
+    private void syncOnAnnounce(UniquidMessage request) {
+
+        if (parentSimplifier != null && MessageType.ANNOUNCE.equals(request.getMessageType())) {
+            parentSimplifier.requestBlockchainSync();
         }
+
+    }
+
+    /*
+     * Returns the registry of the parent simplifier or null
+     */
+    private MetricsRegistry getMetricsRegistry() {
+        return parentSimplifier != null ? parentSimplifier.getMetricsRegistry() : null;
+    }
+
+    /*
+     * Signal that a message in flight is completed and give back its permit
+     */
+    private void finished(AdmissionController admission) {
+
+        release(admission);
+
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+
+    }
+
+    /*
+     * Wait until no message is in flight or the deadline passes
+     */
+    private void awaitInFlight(long deadline) throws InterruptedException {
+
+        synchronized (inFlight) {
+
+            long remaining;
+
+            while (inFlight.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+            }
+
+        }
+
+    }
+
+    /*
+     * Give back the permit of a completed message
+     */
+    private static void release(AdmissionController admission) {
+
+        if (admission != null) {
+            admission.release();
+        }
+
+    }
+
+    /*
+     * Build the response sent when a request is shed
+     */
+    private static FunctionResponseMessage createOverloadedResponse() {
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setError(ResponseCodes.RESULT_OVERLOADED);
+        response.setResult("Provider overloaded");
+
+        return response;
+    }
+
+    /*
+     * Build the response sent when a request expires before a worker takes it, as Core does for an execution
+     */
+    private static FunctionResponseMessage createTimeoutResponse() {
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setError(ResponseCodes.RESULT_TIMEOUT);
+        response.setResult("Function timed out");
+
+        return response;
+    }
+
+    /*
+     * Flush a response produced asynchronously
+     */
+    private static void flush(EndPoint endPoint, FunctionResponseMessage response, Throwable throwable,
+                              MetricsRegistry metrics) {
+
+        if (throwable != null) {
+            LOGGER.error("Error while handling message", throwable);
+            return;
+        }
+
+        if (response != null) {
+
+            try {
+
+                long start = System.nanoTime();
+
+                endPoint.setResponse(response);
+                endPoint.flush();
+
+                ResponseWriter.recordFlush(metrics, endPoint, start);
+
+            } catch (Exception e) {
+                LOGGER.error("Error while flushing response", e);
+            }
+
+        }
+
+    }
+
+    /**
+     * Builder for {@link Listener}
+     */
+    public static class Builder {
+
+        private String broker;
+        private String topic;
+        private MessageHandler handler;
+        private int workerThreads = 0;
+        private int queueCapacity = 1024;
+        private int maxFlushBatch = 64;
+        private AdmissionController admissionController;
+        private Supplier<Connector> connectorSupplier;
+        private int[] laneWeights = PriorityLanes.defaultWeights();
+        private int maxQueuedPerUser = 0;
+
+        public Builder setBroker(String broker) {
+            this.broker = broker;
+            return this;
+        }
+
+        public Builder setTopic(String topic) {
+            this.topic = topic;
+            return this;
+        }
+
+        public Builder setHandler(MessageHandler handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        /**
+         * Set the number of threads that handle the messages. With 0 (the default) every message is handled
+         * by the thread that accepts it.
+         */
+        public Builder setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        /**
+         * Set the number of messages that can wait for a worker thread
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("queueCapacity must be positive");
+            }
+
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of responses flushed in one batch by the writer thread
+         */
+        public Builder setMaxFlushBatch(int maxFlushBatch) {
+            this.maxFlushBatch = maxFlushBatch;
+            return this;
+        }
+
+        /**
+         * Set the {@link AdmissionController} that sheds the requests and limits the messages in flight when the
+         * workers are overloaded. Used only with worker threads.
+         */
+        public Builder setAdmissionController(AdmissionController admissionController) {
+            this.admissionController = admissionController;
+            return this;
+        }
+
+        /**
+         * Set the supplier of the {@link Connector} opened every time the listener starts, instead of an
+         * {@link MQTTConnector} on the broker and topic. See {@link com.uniquid.core.connector.InMemoryConnector}
+         * for in-process callers.
+         */
+        public Builder setConnectorSupplier(Supplier<Connector> connectorSupplier) {
+            this.connectorSupplier = connectorSupplier;
+            return this;
+        }
+
+        /**
+         * Set the share of the worker threads given to a lane when other lanes have messages waiting. Used only
+         * with worker threads.
+         */
+        public Builder setLaneWeight(PriorityLanes.Lane lane, int weight) {
+            this.laneWeights[lane.ordinal()] = weight;
+            return this;
+        }
+
+        /**
+         * Run the function requests of the same user one after the other, in the order they are received, while
+         * the requests of different users run in parallel. A request received when maxQueuedPerUser requests of
+         * the same user are already waiting is refused as overloaded, and so is a request whose turn comes while
+         * the queue of the workers is full. With 0 (the default) the requests are not ordered. Used only with
+         * worker threads.
+         */
+        public Builder setOrderedPerUser(int maxQueuedPerUser) {
+            this.maxQueuedPerUser = maxQueuedPerUser;
+            return this;
+        }
+
+        public Listener build() {
+            return new Listener(this);
+        }
+
     }
 }
@@ -11,7 +11,22 @@ import com.uniquid.core.impl.UniquidSimplifier;
 import com.uniquid.messages.FunctionResponseMessage;
 import com.uniquid.messages.UniquidMessage;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface MessageHandler {
 
     FunctionResponseMessage handleMessage(UniquidSimplifier simplifier, UniquidMessage message);
+
+    /**
+     * Handle a message without blocking the calling thread. The default implementation delegates to
+     * {@link #handleMessage(UniquidSimplifier, UniquidMessage)}.
+     *
+     * @param simplifier the {@link UniquidSimplifier} that received the message
+     * @param message the message to handle
+     * @return a {@link CompletionStage} that completes with the response to send or null
+     */
+    default CompletionStage<FunctionResponseMessage> handleMessageAsync(UniquidSimplifier simplifier, UniquidMessage message) {
+        return CompletableFuture.completedFuture(handleMessage(simplifier, message));
+    }
 }
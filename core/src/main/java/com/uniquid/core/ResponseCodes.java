@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core;
+
+import com.uniquid.core.auth.AuthorizationTable;
+import com.uniquid.messages.FunctionResponseMessage;
+
+/**
+ * Error codes set by the library in {@link FunctionResponseMessage#setError(int)}, in addition to the ones
+ * defined by {@link FunctionResponseMessage}. A function not allowed by the contract of the sender is refused with
+ * {@link FunctionResponseMessage#RESULT_NO_PERMISSION}; code 11 is not used.
+ */
+public final class ResponseCodes {
+
+    /** No contract exists for the sender */
+    public static final int RESULT_SENDER_NOT_FOUND = 10;
+
+    /** The contract of the sender is expired or not yet valid */
+    public static final int RESULT_CONTRACT_EXPIRED = 12;
+
+    /** The contract of the sender has an unknown version */
+    public static final int RESULT_INVALID_CONTRACT_VERSION = 13;
+
+    /** The function is overloaded and refused the request */
+    public static final int RESULT_BUSY = 14;
+
+    /** The user exceeded its rate limit */
+    public static final int RESULT_THROTTLED = 15;
+
+    /** The provider is overloaded and shed the request */
+    public static final int RESULT_OVERLOADED = 16;
+
+    /** The deadline of the request passed before the function completed */
+    public static final int RESULT_TIMEOUT = 17;
+
+    /** The response is a chunk of a streamed result and more chunks follow */
+    public static final int RESULT_PARTIAL = 18;
+
+    private ResponseCodes() {
+        // NOTHING TO DO
+    }
+
+    /**
+     * Returns the error code related to a failed authorization
+     *
+     * @param authorizationResult the result returned by the {@link AuthorizationTable}
+     * @return the error code to send to the user
+     */
+    public static int fromAuthorizationResult(int authorizationResult) {
+
+        switch (authorizationResult) {
+            case AuthorizationTable.AUTHORIZED:
+                return FunctionResponseMessage.RESULT_OK;
+            case AuthorizationTable.SENDER_NOT_FOUND:
+                return RESULT_SENDER_NOT_FOUND;
+            case AuthorizationTable.CONTRACT_EXPIRED:
+                return RESULT_CONTRACT_EXPIRED;
+            case AuthorizationTable.NOT_AUTHORIZED:
+                // The code clients already check for a refused function
+                return FunctionResponseMessage.RESULT_NO_PERMISSION;
+            case AuthorizationTable.INVALID_CONTRACT_VERSION:
+                return RESULT_INVALID_CONTRACT_VERSION;
+            default:
+                return FunctionResponseMessage.RESULT_ERROR;
+        }
+
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import com.uniquid.register.exception.RegisterException;
+import com.uniquid.register.provider.ProviderChannel;
+import com.uniquid.register.provider.ProviderRegister;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory table of the {@link ContractPermission} of the provider channels, keyed by user address.
+ * It allows to authorize a request with one hash lookup and one bit test, without querying the
+ * {@link ProviderRegister}.
+ */
+public class AuthorizationTable {
+
+    /** The sender is allowed to call the function */
+    public static final int AUTHORIZED = 0;
+
+    /** No contract exists for the sender */
+    public static final int SENDER_NOT_FOUND = 1;
+
+    /** The contract of the sender is expired or not yet valid */
+    public static final int CONTRACT_EXPIRED = 2;
+
+    /** The contract of the sender doesn't allow to call the function */
+    public static final int NOT_AUTHORIZED = 3;
+
+    /** The contract of the sender has an unknown version */
+    public static final int INVALID_CONTRACT_VERSION = 4;
+
+    /* Revoke address the node gives to the channel created by the imprinting */
+    private static final String IMPRINTING_REVOKE_ADDRESS = "IMPRINTING";
+
+    private final ConcurrentMap<String, ContractPermission> permissions = new ConcurrentHashMap<>();
+
+    /* User address of the imprinting channel present in the table or null */
+    private volatile String imprintingUserAddress;
+
+    /*
+     * Incremented on every removal so that a permission read from the register before a revocation
+     * is not cached after it.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns the {@link ContractPermission} of the user or null if the user is not present in the table.
+     *
+     * @param userAddress the address of the user
+     * @return the {@link ContractPermission} of the user or null
+     */
+    public ContractPermission get(String userAddress) {
+
+        if (userAddress == null) {
+            return null;
+        }
+
+        return permissions.get(userAddress);
+
+    }
+
+    /**
+     * Compile and insert (or replace) the permission of a {@link ProviderChannel}.
+     *
+     * @param providerChannel the {@link ProviderChannel} to insert
+     * @return the compiled {@link ContractPermission}
+     */
+    public ContractPermission put(ProviderChannel providerChannel) {
+
+        ContractPermission permission = ContractPermission.compile(providerChannel);
+
+        if (permission.getUserAddress() != null) {
+            permissions.put(permission.getUserAddress(), permission);
+            trackImprinting(providerChannel);
+        }
+
+        return permission;
+
+    }
+
+    /**
+     * Compile and insert the permission of a {@link ProviderChannel} read from the register, unless a removal
+     * happened since the specified generation was read.
+     *
+     * @param providerChannel the {@link ProviderChannel} read from the register
+     * @param expectedGeneration the value of {@link #getGeneration()} read before querying the register
+     * @return the compiled {@link ContractPermission}
+     */
+    public ContractPermission putIfCurrent(ProviderChannel providerChannel, long expectedGeneration) {
+
+        ContractPermission permission = ContractPermission.compile(providerChannel);
+
+        if (permission.getUserAddress() != null && generation.get() == expectedGeneration) {
+
+            ContractPermission previous = permissions.putIfAbsent(permission.getUserAddress(), permission);
+
+            if (previous != null) {
+                return previous;
+            }
+
+            trackImprinting(providerChannel);
+
+            // a removal raced with the insert: drop what could be a stale permission
+            if (generation.get() != expectedGeneration) {
+                permissions.remove(permission.getUserAddress(), permission);
+            }
+
+        }
+
+        return permission;
+
+    }
+
+    /**
+     * Remove the permission related to a {@link ProviderChannel}
+     *
+     * @param providerChannel the {@link ProviderChannel} to remove
+     */
+    public void remove(ProviderChannel providerChannel) {
+
+        generation.incrementAndGet();
+
+        if (providerChannel.getUserAddress() != null) {
+            permissions.remove(providerChannel.getUserAddress());
+        }
+
+    }
+
+    /**
+     * Remove the imprinting channel superseded by a newly created {@link ProviderChannel}. As the node does in the
+     * {@link ProviderRegister}, the imprinting channel is deleted when it is the only one and a normal contract
+     * is created.
+     *
+     * @param providerChannel the {@link ProviderChannel} just created
+     * @return the user address of the removed imprinting channel or null if nothing was removed
+     */
+    public String removeSupersededImprinting(ProviderChannel providerChannel) {
+
+        String userAddress = imprintingUserAddress;
+
+        if (userAddress == null || IMPRINTING_REVOKE_ADDRESS.equals(providerChannel.getRevokeAddress())
+                || permissions.size() != 1 || !permissions.containsKey(userAddress)) {
+            return null;
+        }
+
+        generation.incrementAndGet();
+        permissions.remove(userAddress);
+        imprintingUserAddress = null;
+
+        return userAddress;
+
+    }
+
+    /**
+     * Replace the content of the table with all the channels present in the {@link ProviderRegister}
+     *
+     * @param providerRegister the {@link ProviderRegister} to read
+     * @throws RegisterException in case a problem occurs.
+     */
+    public void reload(ProviderRegister providerRegister) throws RegisterException {
+
+        List<ProviderChannel> channels = providerRegister.getAllChannels();
+
+        Set<String> userAddresses = new HashSet<>();
+
+        imprintingUserAddress = null;
+
+        for (ProviderChannel providerChannel : channels) {
+            userAddresses.add(put(providerChannel).getUserAddress());
+        }
+
+        // Remove the channels that are not in the register anymore without clearing the whole table
+        generation.incrementAndGet();
+        permissions.keySet().retainAll(userAddresses);
+
+    }
+
+    private void trackImprinting(ProviderChannel providerChannel) {
+
+        if (IMPRINTING_REVOKE_ADDRESS.equals(providerChannel.getRevokeAddress())) {
+            imprintingUserAddress = providerChannel.getUserAddress();
+        }
+
+    }
+
+    /**
+     * Returns a live, read only view of the user addresses present in the table
+     * @return the user addresses present in the table
+     */
+    public Set<String> getUserAddresses() {
+        return Collections.unmodifiableSet(permissions.keySet());
+    }
+
+    /**
+     * Returns the current generation of the table
+     * @return the current generation of the table
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the number of permissions in the table
+     * @return the number of permissions in the table
+     */
+    public int size() {
+        return permissions.size();
+    }
+
+    /**
+     * Returns a human readable description of an authorization result
+     *
+     * @param result the authorization result
+     * @return the description of the result
+     */
+    public static String describe(int result) {
+
+        switch (result) {
+            case AUTHORIZED:
+                return "Sender authorized";
+            case SENDER_NOT_FOUND:
+                return "Sender not found in Provider register!";
+            case CONTRACT_EXPIRED:
+                return "Sender found in Provider register, but contract is expired/not yet valid!";
+            case NOT_AUTHORIZED:
+                return "Sender not authorized!";
+            case INVALID_CONTRACT_VERSION:
+                return "Invalid contract version!";
+            default:
+                return "Unknown result";
+        }
+
+    }
+
+}
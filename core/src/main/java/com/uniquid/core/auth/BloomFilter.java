@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter of strings. It can answer that a string is definitely not present, or that it may be
+ * present with the configured false positive probability. Elements can't be removed.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+
+    /**
+     * Creates an instance sized for the expected number of elements and false positive probability
+     *
+     * @param expectedElements the number of elements expected to be inserted
+     * @param falsePositiveProbability the desired false positive probability, between 0 and 1 (exclusive)
+     */
+    public BloomFilter(int expectedElements, double falsePositiveProbability) {
+
+        if (expectedElements <= 0) {
+            throw new IllegalArgumentException("expectedElements must be positive");
+        }
+
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1");
+        }
+
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedElements * Math.log(falsePositiveProbability) / (ln2 * ln2));
+
+        this.numBits = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedElements * ln2));
+        this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+    }
+
+    /**
+     * Insert an element in the filter
+     *
+     * @param element the element to insert
+     */
+    public void put(String element) {
+
+        int h1 = element.hashCode();
+        int h2 = mix(h1);
+
+        for (int i = 0; i < numHashes; i++) {
+
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+
+            long word;
+            do {
+                word = bits.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(index, word, word | mask));
+
+        }
+
+    }
+
+    /**
+     * Returns false if the element was never inserted in the filter, true if it may have been inserted.
+     *
+     * @param element the element to test
+     * @return false if the element is definitely not present
+     */
+    public boolean mightContain(String element) {
+
+        int h1 = element.hashCode();
+        int h2 = mix(h1);
+
+        for (int i = 0; i < numHashes; i++) {
+
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Returns the number of bits of the filter
+     * @return the number of bits of the filter
+     */
+    public int getNumBits() {
+        return numBits;
+    }
+
+    /**
+     * Returns the number of hash functions used by the filter
+     * @return the number of hash functions used by the filter
+     */
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /*
+     * Murmur3 finalizer, used to derive the second hash for double hashing
+     */
+    private static int mix(int h) {
+
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return h | 1;
+    }
+
+}
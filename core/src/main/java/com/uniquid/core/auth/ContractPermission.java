@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import com.uniquid.register.provider.ProviderChannel;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * Precompiled, immutable view of a {@link ProviderChannel} used to authorize function requests.
+ * The hex bitmask of the contract is decoded once and its permission bits are packed into primitive longs,
+ * so that checking a request is a single bit test that doesn't allocate.
+ */
+public final class ContractPermission {
+
+    /** Contract version that carries a bitmask of allowed functions */
+    public static final int VERSION_BITMASK = 0;
+
+    /** Contract version that carries a single allowed function */
+    public static final int VERSION_SINGLE_FUNCTION = 1;
+
+    /** Marker for a contract whose bitmask can't be decoded */
+    public static final int VERSION_INVALID = -1;
+
+    /** Bit of the contract bitmask set in the contracts of the owner of the provider */
+    public static final int OWNER_BIT = 29;
+
+    private final String userAddress;
+    private final String providerAddress;
+    private final int contractVersion;
+    private final long[] permissionBits;
+    private final int singleFunction;
+    private final long since;
+    private final long until;
+    private final byte[] payload;
+
+    private ContractPermission(ProviderChannel providerChannel, int contractVersion, long[] permissionBits,
+                               int singleFunction, byte[] payload) {
+        this.userAddress = providerChannel.getUserAddress();
+        this.providerAddress = providerChannel.getProviderAddress();
+        this.since = providerChannel.getSince();
+        this.until = providerChannel.getUntil();
+        this.contractVersion = contractVersion;
+        this.permissionBits = permissionBits;
+        this.singleFunction = singleFunction;
+        this.payload = payload;
+    }
+
+    /**
+     * Compile a {@link ProviderChannel} into a {@link ContractPermission}.
+     * A channel with a malformed bitmask is compiled as {@link #VERSION_INVALID} so that every check on it fails.
+     *
+     * @param providerChannel the {@link ProviderChannel} to compile
+     * @return the compiled {@link ContractPermission}
+     */
+    public static ContractPermission compile(ProviderChannel providerChannel) {
+
+        byte[] b;
+
+        try {
+
+            b = Hex.decode(providerChannel.getBitmask());
+
+        } catch (Exception ex) {
+
+            return new ContractPermission(providerChannel, VERSION_INVALID, new long[0], -1, new byte[0]);
+
+        }
+
+        if (b.length > 0 && b[0] == VERSION_BITMASK) {
+
+            // Same layout as BitSet.valueOf(): little endian, bit n is bit (n % 8) of byte (n / 8)
+            long[] bits = new long[(b.length - 1 + 7) / 8];
+
+            for (int i = 1; i < b.length; i++) {
+
+                int index = i - 1;
+                bits[index >>> 3] |= (b[i] & 0xFFL) << ((index & 7) << 3);
+
+            }
+
+            return new ContractPermission(providerChannel, VERSION_BITMASK, bits, -1, b);
+
+        } else if (b.length > 1 && b[0] == VERSION_SINGLE_FUNCTION) {
+
+            return new ContractPermission(providerChannel, VERSION_SINGLE_FUNCTION, new long[0], b[1], b);
+
+        }
+
+        return new ContractPermission(providerChannel, VERSION_INVALID, new long[0], -1, b);
+
+    }
+
+    /**
+     * Check if this contract allows to call the requested function at the specified time.
+     *
+     * @param function the function number
+     * @param now the current time in milliseconds
+     * @return {@link AuthorizationTable#AUTHORIZED} or the reason why the request is refused
+     */
+    public int check(int function, long now) {
+
+        if (now < since || now > until) {
+            return AuthorizationTable.CONTRACT_EXPIRED;
+        }
+
+        switch (contractVersion) {
+
+            case VERSION_BITMASK:
+                int word = function >>> 6;
+                if (function >= 0 && word < permissionBits.length && (permissionBits[word] & (1L << function)) != 0) {
+                    return AuthorizationTable.AUTHORIZED;
+                }
+                return AuthorizationTable.NOT_AUTHORIZED;
+
+            case VERSION_SINGLE_FUNCTION:
+                return function == singleFunction ? AuthorizationTable.AUTHORIZED : AuthorizationTable.NOT_AUTHORIZED;
+
+            default:
+                return AuthorizationTable.INVALID_CONTRACT_VERSION;
+
+        }
+
+    }
+
+    /**
+     * Returns true if the bitmask of the contract has the {@link #OWNER_BIT} set
+     * @return true if the user is the owner of the provider
+     */
+    public boolean isOwner() {
+        return contractVersion == VERSION_BITMASK && permissionBits.length > 0
+                && (permissionBits[0] & (1L << OWNER_BIT)) != 0;
+    }
+
+    /**
+     * Returns the user address
+     * @return the user address
+     */
+    public String getUserAddress() {
+        return userAddress;
+    }
+
+    /**
+     * Returns the provider address
+     * @return the provider address
+     */
+    public String getProviderAddress() {
+        return providerAddress;
+    }
+
+    /**
+     * Returns the version of the contract or {@link #VERSION_INVALID}
+     * @return the version of the contract
+     */
+    public int getContractVersion() {
+        return contractVersion;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public long getUntil() {
+        return until;
+    }
+
+    /**
+     * Returns the decoded bitmask of the contract, as passed to the functions. The returned array is shared
+     * among all the requests of this user and must not be modified.
+     * @return the decoded bitmask of the contract
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+
+        return String.format("User address %s; provider address %s; contract version %d; since %d; until %d",
+                userAddress, providerAddress, contractVersion, since, until);
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the user addresses that were looked up in the register without finding a contract.
+ * Every entry expires after the configured time to live.
+ */
+public class NegativeCache {
+
+    private final ConcurrentMap<String, Long> expirations = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    /**
+     * Creates an instance from the maximum number of entries and their time to live
+     *
+     * @param maxEntries the maximum number of entries to keep
+     * @param ttl the time to live of an entry
+     * @param unit the {@link TimeUnit} of the time to live
+     */
+    public NegativeCache(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Returns true if the user address is present in the cache and not expired
+     *
+     * @param userAddress the address of the user
+     * @return true if the user address is known to have no contract
+     */
+    public boolean contains(String userAddress) {
+
+        Long expiration = expirations.get(userAddress);
+
+        if (expiration == null) {
+            return false;
+        }
+
+        if (System.nanoTime() - expiration > 0) {
+
+            expirations.remove(userAddress, expiration);
+            return false;
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Record that the user address has no contract
+     *
+     * @param userAddress the address of the user
+     */
+    public void put(String userAddress) {
+
+        long now = System.nanoTime();
+
+        if (expirations.size() >= maxEntries) {
+            evict(now);
+        }
+
+        expirations.put(userAddress, now + ttlNanos);
+    }
+
+    /**
+     * Remove the user address from the cache
+     *
+     * @param userAddress the address of the user
+     */
+    public void remove(String userAddress) {
+        expirations.remove(userAddress);
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public void clear() {
+        expirations.clear();
+    }
+
+    /**
+     * Returns the number of entries in the cache
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        return expirations.size();
+    }
+
+    /*
+     * Drop the expired entries and, if the cache is still full, an eighth of the entries so that the cost
+     * of the sweep is amortized over the next insertions
+     */
+    private void evict(long now) {
+
+        Iterator<Map.Entry<String, Long>> iterator = expirations.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+
+            if (now - iterator.next().getValue() > 0) {
+                iterator.remove();
+            }
+
+        }
+
+        int target = maxEntries - Math.max(1, maxEntries / 8);
+
+        iterator = expirations.entrySet().iterator();
+
+        while (expirations.size() > target && iterator.hasNext()) {
+
+            iterator.next();
+            iterator.remove();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejection stage placed in front of the {@link com.uniquid.register.provider.ProviderRegister} lookups.
+ * It combines a {@link BloomFilter} of the authorized user addresses with a {@link NegativeCache} of the user
+ * addresses that were recently found without a contract, so that requests from unknown senders are dropped
+ * without querying the register.
+ */
+public class SenderFilter {
+
+    private final int expectedSenders;
+    private final double falsePositiveProbability;
+    private final NegativeCache unknownSenders;
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile BloomFilter authorizedSenders;
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param expectedSenders the expected number of authorized user addresses
+     * @param falsePositiveProbability the false positive probability of the Bloom filter
+     * @param negativeCacheSize the maximum number of unknown user addresses to remember
+     * @param negativeCacheTtl the time an unknown user address is remembered
+     * @param unit the {@link TimeUnit} of negativeCacheTtl
+     */
+    public SenderFilter(int expectedSenders, double falsePositiveProbability, int negativeCacheSize,
+                        long negativeCacheTtl, TimeUnit unit) {
+        this.expectedSenders = expectedSenders;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.unknownSenders = new NegativeCache(negativeCacheSize, negativeCacheTtl, unit);
+        this.authorizedSenders = new BloomFilter(expectedSenders, falsePositiveProbability);
+    }
+
+    /**
+     * Returns true if the user address is known to have no contract and the request can be dropped
+     *
+     * @param userAddress the address of the user
+     * @return true if the request can be dropped
+     */
+    public boolean reject(String userAddress) {
+
+        if (!authorizedSenders.mightContain(userAddress) || unknownSenders.contains(userAddress)) {
+
+            rejected.increment();
+            return true;
+
+        }
+
+        return false;
+    }
+
+    /**
+     * Record that a contract exists for the user address
+     *
+     * @param userAddress the address of the user
+     */
+    public synchronized void senderAuthorized(String userAddress) {
+
+        authorizedSenders.put(userAddress);
+        unknownSenders.remove(userAddress);
+
+    }
+
+    /**
+     * Record that no contract exists for the user address
+     *
+     * @param userAddress the address of the user
+     */
+    public void senderUnknown(String userAddress) {
+        unknownSenders.put(userAddress);
+    }
+
+    /**
+     * Replace the Bloom filter with a new one containing the specified user addresses. This allows to forget
+     * the revoked user addresses.
+     *
+     * @param userAddresses the authorized user addresses
+     */
+    public synchronized void rebuild(Collection<String> userAddresses) {
+
+        BloomFilter bloomFilter = new BloomFilter(Math.max(expectedSenders, userAddresses.size() * 2),
+                falsePositiveProbability);
+
+        for (String userAddress : userAddresses) {
+            bloomFilter.put(userAddress);
+        }
+
+        authorizedSenders = bloomFilter;
+
+    }
+
+    /**
+     * Returns the number of requests rejected by this filter
+     * @return the number of requests rejected by this filter
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe cache bounded both in size and in time: an entry expires once its time to live is elapsed, and when
+ * the cache is full an entry is evicted according to the {@link EvictionPolicy}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Which entry to evict when the cache is full
+     */
+    public enum EvictionPolicy {
+
+        /** Evict the entry inserted first */
+        FIFO,
+
+        /** Evict the entry not read for the longest time */
+        LRU
+
+    }
+
+    private static final class CacheEntry<V> {
+
+        private final V value;
+        private final long expiration;
+
+        private CacheEntry(V value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param maxSize the maximum number of entries
+     * @param ttl the time to live of an entry
+     * @param unit the {@link TimeUnit} of the time to live
+     * @param evictionPolicy the {@link EvictionPolicy} to apply when the cache is full
+     */
+    public BoundedCache(int maxSize, long ttl, TimeUnit unit, EvictionPolicy evictionPolicy) {
+
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, EvictionPolicy.LRU.equals(evictionPolicy)) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+
+                return false;
+            }
+
+        };
+    }
+
+    /**
+     * Returns the value associated with the key or null if absent or expired
+     *
+     * @param key the key
+     * @return the value associated with the key or null
+     */
+    public synchronized V get(K key) {
+
+        CacheEntry<V> entry = lookup(key, System.nanoTime());
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        return entry.value;
+    }
+
+    /**
+     * Associate the value with the key if no live value is present
+     *
+     * @param key the key
+     * @param value the value
+     * @return the live value already associated with the key or null if the value was inserted
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+
+        long now = System.nanoTime();
+
+        CacheEntry<V> entry = lookup(key, now);
+
+        if (entry != null) {
+            hits.increment();
+            return entry.value;
+        }
+
+        misses.increment();
+        entries.put(key, new CacheEntry<>(value, now + ttlNanos));
+
+        return null;
+    }
+
+    /**
+     * Associate the value with the key, replacing the previous one
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+
+        entries.put(key, new CacheEntry<>(value, System.nanoTime() + ttlNanos));
+
+    }
+
+    /**
+     * Remove the value associated with the key
+     *
+     * @param key the key
+     * @return the value removed or null
+     */
+    public synchronized V remove(K key) {
+
+        CacheEntry<V> entry = entries.remove(key);
+
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Remove the entries whose key matches the predicate
+     *
+     * @param predicate the predicate to test the keys with
+     * @return the number of entries removed
+     */
+    public synchronized int removeIf(Predicate<? super K> predicate) {
+
+        int removed = 0;
+
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+
+            if (predicate.test(iterator.next())) {
+                iterator.remove();
+                removed++;
+            }
+
+        }
+
+        return removed;
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries, including the expired ones not yet removed
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a live value
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a live value
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries evicted because the cache was full
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /*
+     * Returns the live entry associated with the key, removing it if expired. Must be called holding the lock.
+     */
+    private CacheEntry<V> lookup(K key, long now) {
+
+        CacheEntry<V> entry = entries.get(key);
+
+        if (entry != null && now - entry.expiration > 0) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry;
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.cache;
+
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the responses of the function requests executed recently, identified by user address and request id.
+ * A request redelivered by the broker or retried by the user within the time window receives the response of the
+ * first execution instead of executing the function again. A duplicate that arrives while the first execution is
+ * still running waits for it.
+ */
+public class IdempotencyStore {
+
+    private static final class RequestKey {
+
+        private final String user;
+        private final long id;
+
+        private RequestKey(String user, long id) {
+            this.user = user;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof RequestKey)) {
+                return false;
+            }
+
+            RequestKey other = (RequestKey) object;
+
+            return id == other.id && (user != null ? user.equals(other.user) : other.user == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (user != null ? user.hashCode() : 0) + Long.hashCode(id);
+        }
+
+    }
+
+    private final BoundedCache<RequestKey, CompletableFuture<FunctionResponseMessage>> responses;
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param maxSize the maximum number of requests remembered
+     * @param window the time a request is remembered for
+     * @param unit the {@link TimeUnit} of the window
+     * @param evictionPolicy the {@link BoundedCache.EvictionPolicy} to apply when the store is full
+     */
+    public IdempotencyStore(int maxSize, long window, TimeUnit unit, BoundedCache.EvictionPolicy evictionPolicy) {
+        this.responses = new BoundedCache<>(maxSize, window, unit, evictionPolicy);
+    }
+
+    /**
+     * Record the execution of a request
+     *
+     * @param request the {@link FunctionRequestMessage} to execute
+     * @param pending the {@link CompletableFuture} that will complete with the response
+     * @return the response of a previous execution of the same request, or null if the request must be executed
+     */
+    public CompletableFuture<FunctionResponseMessage> register(FunctionRequestMessage request,
+                                                               CompletableFuture<FunctionResponseMessage> pending) {
+
+        return responses.putIfAbsent(new RequestKey(request.getUser(), request.getId()), pending);
+
+    }
+
+    /**
+     * Forget a request, so that a following delivery will execute it again
+     *
+     * @param request the {@link FunctionRequestMessage} to forget
+     */
+    public void discard(FunctionRequestMessage request) {
+
+        responses.remove(new RequestKey(request.getUser(), request.getId()));
+
+    }
+
+    /**
+     * Remove all the requests
+     */
+    public void clear() {
+        responses.clear();
+    }
+
+    /**
+     * Returns the number of requests remembered
+     * @return the number of requests remembered
+     */
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * Returns the number of duplicate requests answered without executing the function
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return responses.getHitCount();
+    }
+
+    /**
+     * Returns the number of requests executed
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return responses.getMissCount();
+    }
+
+    /**
+     * Returns a copy of a response, so that every requester can modify its own instance
+     *
+     * @param response the response to copy
+     * @return the copy of the response
+     */
+    public static FunctionResponseMessage copy(FunctionResponseMessage response) {
+
+        if (response == null) {
+            return null;
+        }
+
+        FunctionResponseMessage copy = new FunctionResponseMessage();
+        copy.setId(response.getId());
+        copy.setProvider(response.getProvider());
+        copy.setResult(response.getResult());
+        copy.setError(response.getError());
+
+        return copy;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.cache;
+
+import com.uniquid.core.provider.CacheableFunction;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the executions of the {@link CacheableFunction}s in progress, keyed by function number, parameters,
+ * contract payload and, for the functions cached per user, user address. A request identical to one being executed
+ * waits for that execution instead of executing the function again, so that many users polling the same function
+ * at the same instant cause a single execution.
+ * <p>
+ * Only the executions in progress are tracked: an execution is forgotten as soon as it completes.
+ */
+public class RequestCoalescer {
+
+    private static final class ExecutionKey {
+
+        private final int function;
+        private final String parameters;
+        private final String user;
+        private final byte[] payload;
+
+        private ExecutionKey(int function, String parameters, String user, byte[] payload) {
+            this.function = function;
+            this.parameters = parameters;
+            this.user = user;
+            this.payload = payload;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof ExecutionKey)) {
+                return false;
+            }
+
+            ExecutionKey other = (ExecutionKey) object;
+
+            return function == other.function && Objects.equals(parameters, other.parameters)
+                    && Objects.equals(user, other.user) && Arrays.equals(payload, other.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * function + Objects.hashCode(parameters)) + Objects.hashCode(user))
+                    + Arrays.hashCode(payload);
+        }
+
+    }
+
+    private final ConcurrentHashMap<ExecutionKey, CompletableFuture<FunctionResponseMessage>> executions =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+
+    /**
+     * Record the execution of a request
+     *
+     * @param function the {@link CacheableFunction} called by the request
+     * @param request the {@link FunctionRequestMessage} to execute
+     * @param payload the payload from the contract of the user, passed to the function
+     * @param execution the {@link CompletableFuture} that will complete with the outcome of the function
+     * @return the execution in progress of an identical request, or null if the request must be executed
+     */
+    public CompletableFuture<FunctionResponseMessage> join(CacheableFunction function, FunctionRequestMessage request,
+                                                           byte[] payload,
+                                                           CompletableFuture<FunctionResponseMessage> execution) {
+
+        CompletableFuture<FunctionResponseMessage> running =
+                executions.putIfAbsent(createKey(function, request, payload), execution);
+
+        if (running != null) {
+            coalesced.increment();
+        } else {
+            executed.increment();
+        }
+
+        return running;
+    }
+
+    /**
+     * Forget a completed execution, so that a following request will execute the function again
+     *
+     * @param function the {@link CacheableFunction} called by the request
+     * @param request the {@link FunctionRequestMessage} executed
+     * @param payload the payload from the contract of the user
+     * @param execution the {@link CompletableFuture} passed to {@link #join}
+     */
+    public void release(CacheableFunction function, FunctionRequestMessage request, byte[] payload,
+                        CompletableFuture<FunctionResponseMessage> execution) {
+
+        executions.remove(createKey(function, request, payload), execution);
+
+    }
+
+    /**
+     * Returns the number of executions in progress
+     * @return the number of executions in progress
+     */
+    public int size() {
+        return executions.size();
+    }
+
+    /**
+     * Returns the number of requests that waited for an identical execution instead of executing the function
+     * @return the number of requests coalesced
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of requests that executed the function
+     * @return the number of executions
+     */
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    private static ExecutionKey createKey(CacheableFunction function, FunctionRequestMessage request, byte[] payload) {
+
+        return new ExecutionKey(request.getFunction(), request.getParameters(),
+                function.isCachedPerUser() ? request.getUser() : null, payload);
+
+    }
+
+}
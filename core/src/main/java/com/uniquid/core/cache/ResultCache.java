@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.cache;
+
+import com.uniquid.core.provider.CacheableFunction;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the results produced by the {@link CacheableFunction}s, keyed by function number, parameters,
+ * contract payload and, for the functions cached per user, user address. The least recently used results are
+ * evicted when the cache is full.
+ */
+public class ResultCache {
+
+    private static final class ResultKey {
+
+        private final int function;
+        private final String parameters;
+        private final String user;
+        private final byte[] payload;
+
+        private ResultKey(int function, String parameters, String user, byte[] payload) {
+            this.function = function;
+            this.parameters = parameters;
+            this.user = user;
+            this.payload = payload;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof ResultKey)) {
+                return false;
+            }
+
+            ResultKey other = (ResultKey) object;
+
+            return function == other.function && Objects.equals(parameters, other.parameters)
+                    && Objects.equals(user, other.user) && Arrays.equals(payload, other.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * function + Objects.hashCode(parameters)) + Objects.hashCode(user))
+                    + Arrays.hashCode(payload);
+        }
+
+    }
+
+    private static final class CachedResult {
+
+        private final String result;
+        private final long expiration;
+
+        private CachedResult(String result, long expiration) {
+            this.result = result;
+            this.expiration = expiration;
+        }
+
+    }
+
+    private final BoundedCache<ResultKey, CachedResult> results;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param maxSize the maximum number of results
+     * @param maxTtl the maximum time a result is kept, whatever the time to live declared by the function
+     * @param unit the {@link TimeUnit} of the maximum time to live
+     */
+    public ResultCache(int maxSize, long maxTtl, TimeUnit unit) {
+        this.results = new BoundedCache<>(maxSize, maxTtl, unit, BoundedCache.EvictionPolicy.LRU);
+    }
+
+    /**
+     * Returns a response built from the cached result of the request or null
+     *
+     * @param function the {@link CacheableFunction} called by the request
+     * @param request the {@link FunctionRequestMessage}
+     * @param payload the payload from the contract of the user, passed to the function
+     * @return a new response with the cached result or null
+     */
+    public FunctionResponseMessage get(CacheableFunction function, FunctionRequestMessage request, byte[] payload) {
+
+        ResultKey key = createKey(function, request, payload);
+
+        CachedResult cached = results.get(key);
+
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (System.nanoTime() - cached.expiration > 0) {
+            results.remove(key);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setResult(cached.result);
+        response.setError(FunctionResponseMessage.RESULT_OK);
+
+        return response;
+    }
+
+    /**
+     * Cache the result of a successful execution
+     *
+     * @param function the {@link CacheableFunction} called by the request
+     * @param request the {@link FunctionRequestMessage}
+     * @param payload the payload from the contract of the user, passed to the function
+     * @param response the {@link FunctionResponseMessage} produced by the function
+     */
+    public void put(CacheableFunction function, FunctionRequestMessage request, byte[] payload,
+                    FunctionResponseMessage response) {
+
+        if (response.getError() != FunctionResponseMessage.RESULT_OK || function.getCacheTtl() <= 0) {
+            return;
+        }
+
+        long expiration = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(function.getCacheTtl());
+
+        results.put(createKey(function, request, payload), new CachedResult(response.getResult(), expiration));
+
+    }
+
+    /**
+     * Remove the results cached for a user
+     *
+     * @param userAddress the address of the user
+     * @return the number of results removed
+     */
+    public int invalidateUser(String userAddress) {
+
+        return results.removeIf(key -> key.user != null && key.user.equals(userAddress));
+
+    }
+
+    /**
+     * Remove all the results
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    /**
+     * Returns the number of results cached
+     * @return the number of results cached
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests not found in the cache
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static ResultKey createKey(CacheableFunction function, FunctionRequestMessage request, byte[] payload) {
+
+        return new ResultKey(request.getFunction(), request.getParameters(),
+                function.isCachedPerUser() ? request.getUser() : null, payload);
+
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.connector;
+
+import com.uniquid.connector.Connector;
+import com.uniquid.connector.ConnectorException;
+import com.uniquid.connector.EndPoint;
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.messages.UniquidMessage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * {@link Connector} for callers running in the same process as the provider: the messages are handed to the
+ * {@link com.uniquid.core.Listener} through a queue, without a broker and without serialization.
+ * <p>
+ * The message objects are shared, not copied: the caller must not modify a request after sending it.
+ * The same instance can be supplied again when the listener restarts: the requests sent while it was closed
+ * are accepted after {@link #connect()}.
+ */
+public class InMemoryConnector implements Connector {
+
+    // Wakes up a thread waiting in accept when the connector is closed
+    private static final EndPoint CLOSED = new InMemoryEndPoint(null, null, null);
+
+    private final BlockingQueue<EndPoint> queue = new LinkedBlockingQueue<>();
+
+    private volatile boolean connected;
+
+    @Override
+    public void connect() throws ConnectorException {
+        connected = true;
+    }
+
+    @Override
+    public EndPoint accept() throws ConnectorException, InterruptedException {
+
+        while (true) {
+
+            if (!connected) {
+                throw new ConnectorException("Connector not connected");
+            }
+
+            EndPoint endPoint = queue.take();
+
+            if (endPoint != CLOSED) {
+                return endPoint;
+            }
+
+        }
+
+    }
+
+    @Override
+    public void close() throws ConnectorException {
+
+        connected = false;
+        queue.add(CLOSED);
+
+    }
+
+    /**
+     * Returns true if the connector is connected
+     * @return true if the connector is connected
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Send a message to the provider
+     *
+     * @param request the message to send
+     * @return a {@link CompletableFuture} that completes with the final response, if the message has one
+     */
+    public CompletableFuture<FunctionResponseMessage> send(UniquidMessage request) {
+        return send(request, null);
+    }
+
+    /**
+     * Send a message to the provider, receiving the chunks of a streamed response as they are flushed
+     *
+     * @param request the message to send
+     * @param responses the consumer of every response flushed, chunks included, or null
+     * @return a {@link CompletableFuture} that completes with the final response, if the message has one
+     */
+    public CompletableFuture<FunctionResponseMessage> send(UniquidMessage request,
+                                                           Consumer<FunctionResponseMessage> responses) {
+
+        CompletableFuture<FunctionResponseMessage> future = new CompletableFuture<>();
+
+        queue.add(new InMemoryEndPoint(request, future, responses));
+
+        return future;
+    }
+
+    /**
+     * Returns the number of messages sent and not yet accepted
+     * @return the number of messages waiting
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /*
+     * The exchange of a message: flushing a response hands it to the caller
+     */
+    private static final class InMemoryEndPoint implements EndPoint {
+
+        private final UniquidMessage request;
+        private final CompletableFuture<FunctionResponseMessage> future;
+        private final Consumer<FunctionResponseMessage> responses;
+
+        private FunctionResponseMessage response;
+
+        private InMemoryEndPoint(UniquidMessage request, CompletableFuture<FunctionResponseMessage> future,
+                                 Consumer<FunctionResponseMessage> responses) {
+            this.request = request;
+            this.future = future;
+            this.responses = responses;
+        }
+
+        @Override
+        public UniquidMessage getRequest() {
+            return request;
+        }
+
+        @Override
+        public synchronized void setResponse(FunctionResponseMessage response) {
+            this.response = response;
+        }
+
+        @Override
+        public synchronized void flush() throws ConnectorException {
+
+            if (response == null) {
+                return;
+            }
+
+            if (responses != null) {
+                responses.accept(response);
+            }
+
+            if (response.getError() != ResponseCodes.RESULT_PARTIAL) {
+                future.complete(response);
+            }
+
+            response = null;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for a pipelined {@link com.uniquid.core.Listener}.
+ * <p>
+ * The time a request waits for a worker is compared with a target delay, CoDel style: a queue that stays above the
+ * target for a whole interval is considered overloaded and requests are shed at a rate that grows with the square
+ * root of the number of shed requests, until the delay is below the target again. Short bursts are absorbed.
+ * <p>
+ * In addition, at most maxInFlight messages are accepted at the same time: when all the permits are in use the
+ * listener stops reading from the connector and the broker buffers the messages.
+ */
+public class AdmissionController {
+
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final Semaphore permits;
+
+    private boolean aboveTarget;
+    private long firstAboveTime;
+    private boolean dropping;
+    private long dropNext;
+    private int count;
+
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param targetDelay the acceptable time a request waits for a worker
+     * @param interval the time the delay must stay above the target before shedding
+     * @param unit the {@link TimeUnit} of targetDelay and interval
+     * @param maxInFlight the maximum number of messages accepted and not yet completed
+     */
+    public AdmissionController(long targetDelay, long interval, TimeUnit unit, int maxInFlight) {
+
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+
+        this.targetNanos = unit.toNanos(targetDelay);
+        this.intervalNanos = unit.toNanos(interval);
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Wait until a new message can be accepted
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    /**
+     * Signal that an accepted message is completed
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Decide if a request dequeued by a worker must be shed
+     *
+     * @param enqueuedNanos the {@link System#nanoTime()} at which the request was queued
+     * @return true if the request must be refused
+     */
+    public boolean shouldShed(long enqueuedNanos) {
+
+        long now = System.nanoTime();
+
+        return shouldShed(now - enqueuedNanos, now);
+    }
+
+    /*
+     * CoDel control law on the sojourn time of a request
+     */
+    synchronized boolean shouldShed(long sojournNanos, long now) {
+
+        if (sojournNanos < targetNanos) {
+
+            aboveTarget = false;
+            dropping = false;
+
+            return false;
+        }
+
+        if (!aboveTarget) {
+
+            aboveTarget = true;
+            firstAboveTime = now + intervalNanos;
+
+            return false;
+        }
+
+        if (!dropping) {
+
+            if (now - firstAboveTime < 0) {
+                return false;
+            }
+
+            // Restart from the previous rate if the overload resumed shortly after
+            count = count > 2 && now - dropNext < 16 * intervalNanos ? count - 2 : 1;
+            dropping = true;
+            dropNext = controlLaw(now);
+
+            shed.increment();
+            return true;
+        }
+
+        if (now - dropNext >= 0) {
+
+            count++;
+            dropNext = controlLaw(dropNext);
+
+            shed.increment();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of requests shed
+     * @return the number of requests shed
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Returns the number of messages that can still be accepted
+     * @return the number of messages that can still be accepted
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    private long controlLaw(long time) {
+        return time + (long) (intervalNanos / Math.sqrt(count));
+    }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.node.UniquidNode;
+import com.uniquid.node.listeners.EmptyUniquidNodeEventListener;
+import com.uniquid.register.provider.ProviderChannel;
+import com.uniquid.register.user.UserChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schedules the synchronization of a {@link UniquidNode} with the blockchain, adapting the delay to the activity.
+ * <p>
+ * After a synchronization that downloaded blocks or changed contracts the delay goes back to the minimum; after
+ * an idle one it doubles, up to the maximum. While contract transactions are waiting for a confirmation, see
+ * {@link #markPending()}, the delay never exceeds the pending delay. {@link #trigger()} runs a synchronization
+ * immediately, but not sooner than the minimum trigger interval after the end of the previous one, so that a flood
+ * of triggers doesn't turn into back to back synchronizations. Only one synchronization runs at a time.
+ * <p>
+ * The {@link Future} returned by {@link #start()} completes when the scheduling stops: cancelling it stops the
+ * scheduling.
+ */
+public class BlockchainSyncScheduler extends EmptyUniquidNodeEventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockchainSyncScheduler.class.getName());
+
+    private static final long DEFAULT_MIN_TRIGGER_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final UniquidNode node;
+    private final ScheduledExecutorService executor;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final long pendingDelayMillis;
+    private final long pendingWindowMillis;
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private ScheduledFuture<?> next;
+    private long delayMillis;
+    private long minTriggerIntervalMillis = DEFAULT_MIN_TRIGGER_INTERVAL_MILLIS;
+    private long lastSyncEnd;
+    private boolean running;
+    private boolean rerun;
+
+    private volatile boolean activity;
+    private volatile long pendingUntil;
+
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param node the {@link UniquidNode} to synchronize
+     * @param executor the {@link ScheduledExecutorService} that runs the synchronizations
+     * @param minDelay the delay after a synchronization with activity
+     * @param maxDelay the maximum delay when the blockchain is idle
+     * @param pendingDelay the maximum delay while contract transactions are pending
+     * @param pendingWindow how long transactions are considered pending if no contract change is seen
+     * @param unit the {@link TimeUnit} of the delays
+     */
+    public BlockchainSyncScheduler(UniquidNode node, ScheduledExecutorService executor, long minDelay, long maxDelay,
+                                   long pendingDelay, long pendingWindow, TimeUnit unit) {
+        this.node = node;
+        this.executor = executor;
+        this.minDelayMillis = Math.max(1, unit.toMillis(minDelay));
+        this.maxDelayMillis = Math.max(minDelayMillis, unit.toMillis(maxDelay));
+        this.pendingDelayMillis = Math.max(1, unit.toMillis(pendingDelay));
+        this.pendingWindowMillis = unit.toMillis(pendingWindow);
+        this.delayMillis = minDelayMillis;
+    }
+
+    /**
+     * Run a first synchronization immediately and schedule the next ones
+     *
+     * @return a {@link Future} that completes when the scheduling stops and stops it when cancelled
+     */
+    public synchronized CompletableFuture<Void> start() {
+
+        node.addUniquidNodeEventListener(this);
+
+        completion.whenComplete((ignored, throwable) -> stop());
+
+        schedule(0);
+
+        return completion;
+    }
+
+    /**
+     * Set the minimum wait between the end of a synchronization and the start of one requested by
+     * {@link #trigger()}. The default is 10 seconds.
+     *
+     * @param interval the minimum wait, 0 to run the triggered synchronizations immediately
+     * @param unit the {@link TimeUnit} of the interval
+     */
+    public synchronized void setMinTriggerInterval(long interval, TimeUnit unit) {
+        this.minTriggerIntervalMillis = Math.max(0, unit.toMillis(interval));
+    }
+
+    /**
+     * Run a synchronization as soon as possible, but not sooner than the minimum trigger interval after the end of
+     * the previous one. If one is running, another one follows it. The triggers received meanwhile are merged.
+     */
+    public synchronized void trigger() {
+
+        if (completion.isDone()) {
+            return;
+        }
+
+        if (running) {
+            rerun = true;
+            return;
+        }
+
+        long delay = getTriggerDelay();
+
+        if (next != null) {
+
+            // Already scheduled soon enough
+            if (next.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+
+            next.cancel(false);
+
+        }
+
+        schedule(delay);
+
+    }
+
+    /**
+     * Signal that contract transactions were broadcast and wait for a confirmation: synchronize more often until
+     * a contract change is seen or the pending window passes
+     */
+    public synchronized void markPending() {
+
+        pendingUntil = System.currentTimeMillis() + pendingWindowMillis;
+
+        if (!running && next != null && next.getDelay(TimeUnit.MILLISECONDS) > pendingDelayMillis) {
+
+            next.cancel(false);
+            schedule(pendingDelayMillis);
+
+        }
+
+    }
+
+    /**
+     * Returns true if contract transactions are waiting for a confirmation
+     * @return true if contract transactions are pending
+     */
+    public boolean isPending() {
+        return System.currentTimeMillis() < pendingUntil;
+    }
+
+    /**
+     * Returns the current delay between two synchronizations when nothing is pending
+     *
+     * @param unit the {@link TimeUnit} of the result
+     * @return the current delay
+     */
+    public synchronized long getDelay(TimeUnit unit) {
+        return unit.convert(delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of synchronizations completed
+     * @return the number of synchronizations completed
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Returns the number of synchronizations failed
+     * @return the number of synchronizations failed
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public void onSyncStarted(int blocks) {
+
+        if (blocks > 0) {
+            activity = true;
+        }
+
+    }
+
+    @Override
+    public void onProviderContractCreated(ProviderChannel providerChannel) {
+        contractChanged();
+    }
+
+    @Override
+    public void onProviderContractRevoked(ProviderChannel providerChannel) {
+        contractChanged();
+    }
+
+    @Override
+    public void onUserContractCreated(UserChannel userChannel) {
+        contractChanged();
+    }
+
+    @Override
+    public void onUserContractRevoked(UserChannel userChannel) {
+        contractChanged();
+    }
+
+    private void contractChanged() {
+        activity = true;
+        pendingUntil = 0;
+    }
+
+    private void sync() {
+
+        synchronized (this) {
+
+            if (completion.isDone()) {
+                return;
+            }
+
+            running = true;
+
+        }
+
+        try {
+
+            LOGGER.info("Updating node from the BlockChain");
+            // Update node from blockchain
+            node.updateNode();
+            syncs.increment();
+
+        } catch (Exception e) {
+
+            LOGGER.error("Exception while updating node from the BlockChain", e);
+            failures.increment();
+
+        }
+
+        synchronized (this) {
+
+            running = false;
+            lastSyncEnd = System.currentTimeMillis();
+
+            if (rerun) {
+
+                rerun = false;
+                schedule(getTriggerDelay());
+                return;
+
+            }
+
+            // Activity seen during this synchronization or since the previous one
+            boolean active = activity;
+            activity = false;
+
+            schedule(nextDelay(active));
+
+        }
+
+    }
+
+    /*
+     * Adapt the delay to the activity and return the wait before the next synchronization
+     */
+    synchronized long nextDelay(boolean active) {
+
+        delayMillis = active ? minDelayMillis : Math.min(maxDelayMillis, delayMillis * 2);
+
+        return isPending() ? Math.min(delayMillis, pendingDelayMillis) : delayMillis;
+    }
+
+    /*
+     * Returns the wait before a triggered synchronization can start
+     */
+    private long getTriggerDelay() {
+        return Math.max(0, lastSyncEnd + minTriggerIntervalMillis - System.currentTimeMillis());
+    }
+
+    private void schedule(long delay) {
+
+        if (completion.isDone()) {
+            return;
+        }
+
+        try {
+
+            LOGGER.debug("Next BlockChain update in {} ms", delay);
+            next = executor.schedule(this::sync, delay, TimeUnit.MILLISECONDS);
+
+        } catch (RejectedExecutionException e) {
+
+            // The executor is shut down
+            completion.complete(null);
+
+        }
+
+    }
+
+    private synchronized void stop() {
+
+        if (next != null) {
+            next.cancel(false);
+        }
+
+        node.removeUniquidNodeEventListener(this);
+
+    }
+
+}
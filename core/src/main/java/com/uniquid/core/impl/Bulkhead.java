@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Isolated executor dedicated to a function: at most maxConcurrency executions run at the same time and at most
+ * queueCapacity executions wait for a thread. When both are exhausted the {@link RejectionPolicy} applies.
+ * An overloaded function can't starve the other functions.
+ * <p>
+ * The slot of an execution is freed when the task returns its {@link CompletionStage}: the concurrency of an
+ * {@link com.uniquid.core.provider.AsyncFunction} that completes on other threads is not bounded by the bulkhead,
+ * only the start of its executions is.
+ * <p>
+ * Once the bulkhead is shut down, because its function is replaced or the provider stops, every submission is
+ * refused whatever the {@link RejectionPolicy}.
+ */
+public class Bulkhead {
+
+    /**
+     * What to do with an execution when the bulkhead is full
+     */
+    public enum RejectionPolicy {
+
+        /** Refuse the execution: the user receives a busy response */
+        REJECT,
+
+        /** Run the execution on the calling thread, slowing down the caller */
+        CALLER_RUNS
+
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param name the name used for the threads of the bulkhead
+     * @param maxConcurrency the maximum number of concurrent executions
+     * @param queueCapacity the maximum number of executions waiting for a thread, 0 for none
+     * @param rejectionPolicy the {@link RejectionPolicy} to apply when the bulkhead is full
+     */
+    public Bulkhead(String name, int maxConcurrency, int queueCapacity, RejectionPolicy rejectionPolicy) {
+
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity can't be negative");
+        }
+
+        // Without a queue an execution starts only if a thread is free
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<Runnable>(queueCapacity)
+                : new SynchronousQueue<Runnable>();
+
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS, queue,
+                new ContextPropagatingThreadFactory(name),
+                RejectionPolicy.CALLER_RUNS.equals(rejectionPolicy) ? new CallerRunsUnlessShutdownPolicy()
+                        : new ThreadPoolExecutor.AbortPolicy());
+
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start a task inside the bulkhead. The returned stage completes exceptionally with a
+     * {@link RejectedExecutionException} if the bulkhead is full or shut down.
+     *
+     * @param task the task to start
+     * @param <T> the type of the result
+     * @return a {@link CompletableFuture} that completes with the result of the task
+     */
+    public <T> CompletableFuture<T> submit(Supplier<? extends CompletionStage<T>> task) {
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        try {
+
+            executor.execute(() -> {
+
+                try {
+
+                    task.get().whenComplete((value, throwable) -> {
+
+                        if (throwable != null) {
+                            result.completeExceptionally(throwable);
+                        } else {
+                            result.complete(value);
+                        }
+
+                    });
+
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+
+            });
+
+        } catch (RejectedExecutionException ex) {
+
+            rejected.increment();
+            result.completeExceptionally(ex);
+
+        }
+
+        return result;
+    }
+
+    /*
+     * CallerRunsPolicy discards the task of a shut down executor: refuse it instead, so that its future completes
+     */
+    private static final class CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Bulkhead shut down");
+            }
+
+            task.run();
+
+        }
+
+    }
+
+    /**
+     * Stop accepting executions
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the number of executions running
+     * @return the number of executions running
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of executions waiting for a thread
+     * @return the number of executions waiting for a thread
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of executions refused
+     * @return the number of executions refused
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+}
@@ -7,6 +7,11 @@
 
 package com.uniquid.core.impl;
 
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.core.auth.AuthorizationTable;
+import com.uniquid.core.auth.ContractPermission;
+import com.uniquid.core.cache.IdempotencyStore;
+import com.uniquid.core.metrics.MetricsRegistry;
 import com.uniquid.messages.CapabilityMessage;
 import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
@@ -14,38 +19,370 @@ import com.uniquid.node.UniquidCapability;
 import com.uniquid.node.UniquidNode;
 import com.uniquid.node.UniquidNodeState;
 import com.uniquid.node.exception.NodeException;
-import com.uniquid.register.provider.ProviderChannel;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 public class DefaultRequestHandler extends RequestMessageHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultRequestHandler.class.getName());
 
+    private final boolean fastFail;
+    private final Executor batchExecutor;
+
+    /**
+     * Creates an instance that doesn't answer to refused requests
+     */
+    public DefaultRequestHandler() {
+        this(false);
+    }
+
+    /**
+     * Creates an instance that, when fastFail is true, answers immediately to refused requests with an error
+     * code from {@link ResponseCodes} instead of letting the user wait for its timeout.
+     * <p>
+     * The entries of a batch start on the thread that handles the batch: the synchronous functions without a
+     * {@link Bulkhead} run one after the other.
+     *
+     * @param fastFail true to answer to refused requests
+     */
+    public DefaultRequestHandler(boolean fastFail) {
+        this(fastFail, null);
+    }
+
+    /**
+     * Creates an instance that, when fastFail is true, answers immediately to refused requests with an error
+     * code from {@link ResponseCodes} and starts the entries of a batch on the specified {@link Executor}, so that
+     * they run in parallel. An entry refused by the executor receives a busy response.
+     *
+     * @param fastFail true to answer to refused requests
+     * @param batchExecutor the {@link Executor} that starts the entries of a batch or null to start them on the
+     *                      thread that handles the batch
+     */
+    public DefaultRequestHandler(boolean fastFail, Executor batchExecutor) {
+        this.fastFail = fastFail;
+        this.batchExecutor = batchExecutor;
+    }
+
     @Override
     public FunctionResponseMessage handleFunctionRequest(FunctionRequestMessage message) {
         LOGGER.info("Received FunctionRequest!");
 
+        ContractPermission permission = null;
+
         try {
-            // Check if sender is authorized or throw exception
-            ProviderChannel providerChannel = simplifier.getProvider(message);
+            long start = System.nanoTime();
+
+            // Check if sender is authorized
+            permission = simplifier.getPermission(message.getUser());
+
+            if (permission != null && message.getFunction() == BATCH_FUNCTION) {
+
+                LOGGER.info("Performing batch...");
+                return performBatch(message, permission).toCompletableFuture().get();
+
+            }
+
+            int result = authorize(permission, message, start);
+
+            if (result == AuthorizationTable.AUTHORIZED) {
+
+                LOGGER.info("Performing function...");
+                return simplifier.performProviderRequest(message, permission.getPayload());
+
+            }
+
+            return refuse(permission, result);
+
+        } catch (Exception e) {
+            return fail(permission, e);
+        }
+    }
+
+    @Override
+    public CompletionStage<FunctionResponseMessage> handleFunctionRequestAsync(FunctionRequestMessage message) {
+        LOGGER.info("Received FunctionRequest!");
+
+        ContractPermission permission = null;
+
+        try {
+            long start = System.nanoTime();
+
+            // Check if sender is authorized
+            permission = simplifier.getPermission(message.getUser());
+
+            if (permission != null && message.getFunction() == BATCH_FUNCTION) {
+
+                LOGGER.info("Performing batch...");
+                return performBatch(message, permission);
+
+            }
+
+            int result = authorize(permission, message, start);
 
-            if (providerChannel != null) {
-                // Get bytes from Smart Contract
-                byte[] payload = simplifier.getBitmask(providerChannel, message.getFunction());
+            if (result == AuthorizationTable.AUTHORIZED) {
 
                 LOGGER.info("Performing function...");
-                return simplifier.performProviderRequest(message, payload);
+                return simplifier.performProviderRequestAsync(message, permission.getPayload());
 
             }
 
+            return CompletableFuture.completedFuture(refuse(permission, result));
+
         } catch (Exception e) {
-            LOGGER.error("Error performing function: ", e);
+            return CompletableFuture.completedFuture(fail(permission, e));
+        }
+    }
+
+    /*
+     * Deduplicate the batch by its id, if an IdempotencyStore is installed, and execute it
+     */
+    private CompletionStage<FunctionResponseMessage> performBatch(final FunctionRequestMessage message,
+                                                                  final ContractPermission permission) {
+
+        final IdempotencyStore store = simplifier.getIdempotencyStore();
+
+        if (store == null) {
+            return executeBatch(message, permission);
+        }
+
+        CompletableFuture<FunctionResponseMessage> pending = new CompletableFuture<>();
+        CompletableFuture<FunctionResponseMessage> previous = store.register(message, pending);
+
+        if (previous != null) {
+
+            LOGGER.debug("Duplicate batch {} from {}: answering with the previous response", message.getId(),
+                    message.getUser());
+
+            return previous.thenApply(IdempotencyStore::copy);
+
+        }
+
+        try {
+
+            executeBatch(message, permission).whenComplete((response, throwable) -> {
+
+                // Like a single request, a batch with refused entries can be retried
+                if (throwable != null || hasRefusedEntry(response)) {
+                    store.discard(message);
+                }
+
+                if (throwable != null) {
+                    pending.completeExceptionally(throwable);
+                } else {
+                    pending.complete(response);
+                }
+
+            });
+
+        } catch (RuntimeException e) {
+
+            store.discard(message);
+            throw e;
+
+        }
+
+        return pending.thenApply(IdempotencyStore::copy);
+    }
+
+    /*
+     * Authorize every entry of a batch with the permission already retrieved, start the authorized ones together
+     * and combine their responses
+     */
+    private CompletionStage<FunctionResponseMessage> executeBatch(FunctionRequestMessage message,
+                                                                  final ContractPermission permission) {
+
+        JSONArray entries = new JSONArray(message.getParameters());
+
+        if (entries.length() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch exceeds " + MAX_BATCH_SIZE + " entries");
+        }
+
+        long now = System.currentTimeMillis();
+
+        final List<CompletableFuture<FunctionResponseMessage>> responses = new ArrayList<>(entries.length());
+        final int[] functions = new int[entries.length()];
+
+        for (int i = 0; i < entries.length(); i++) {
+
+            JSONObject entry = entries.getJSONObject(i);
+
+            final FunctionRequestMessage request = new FunctionRequestMessage();
+            // The entries share the id of the batch: they are deduplicated with it, not one by one
+            request.setId(message.getId());
+            request.setUser(message.getUser());
+            request.setFunction(entry.getInt("function"));
+            request.setParameters(entry.optString("parameters", null));
+
+            functions[i] = request.getFunction();
+
+            int result = request.getFunction() == BATCH_FUNCTION ? AuthorizationTable.NOT_AUTHORIZED
+                    : permission.check(request.getFunction(), now);
+
+            if (result == AuthorizationTable.AUTHORIZED) {
+
+                responses.add(performEntry(request, permission));
+
+            } else {
+
+                responses.add(CompletableFuture.completedFuture(createDenyResponse(permission,
+                        ResponseCodes.fromAuthorizationResult(result), AuthorizationTable.describe(result))));
+
+            }
+
+        }
+
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+
+            JSONArray results = new JSONArray();
+
+            for (int i = 0; i < functions.length; i++) {
+
+                FunctionResponseMessage response = responses.get(i).join();
+
+                JSONObject result = new JSONObject();
+                result.put("function", functions[i]);
+                result.put("error", response.getError());
+                result.put("result", response.getResult());
+
+                results.put(result);
+
+            }
+
+            FunctionResponseMessage batchResponse = new FunctionResponseMessage();
+            batchResponse.setError(FunctionResponseMessage.RESULT_OK);
+            batchResponse.setResult(results.toString());
+            batchResponse.setProvider(permission.getProviderAddress());
+
+            return batchResponse;
+        });
+
+    }
+
+    /*
+     * Returns true if an entry of the batch response was refused without running its function
+     */
+    private static boolean hasRefusedEntry(FunctionResponseMessage response) {
+
+        JSONArray results = new JSONArray(response.getResult());
+
+        for (int i = 0; i < results.length(); i++) {
+
+            int error = results.getJSONObject(i).getInt("error");
+
+            if (error == ResponseCodes.RESULT_BUSY || error == ResponseCodes.RESULT_TIMEOUT
+                    || error == ResponseCodes.RESULT_THROTTLED || error == ResponseCodes.RESULT_OVERLOADED) {
+                return true;
+            }
+
+        }
+
+        return false;
+    }
+
+    /*
+     * Start an authorized entry of a batch, on the batch executor if any
+     */
+    private CompletableFuture<FunctionResponseMessage> performEntry(final FunctionRequestMessage request,
+                                                                    final ContractPermission permission) {
+
+        if (batchExecutor == null) {
+            return simplifier.performProviderRequestAsync(request, permission.getPayload(), false)
+                    .toCompletableFuture();
         }
+
+        try {
+
+            return CompletableFuture.supplyAsync(() -> simplifier.performProviderRequestAsync(request,
+                    permission.getPayload(), false), batchExecutor).thenCompose(stage -> stage);
+
+        } catch (RejectedExecutionException e) {
+
+            return CompletableFuture.completedFuture(createDenyResponse(permission, ResponseCodes.RESULT_BUSY,
+                    "Function busy"));
+
+        }
+
+    }
+
+    /*
+     * Check the permission of the sender against the requested function and record the time spent since start
+     */
+    private int authorize(ContractPermission permission, FunctionRequestMessage message, long start) {
+
+        int result = permission != null ? permission.check(message.getFunction(), System.currentTimeMillis())
+                : AuthorizationTable.SENDER_NOT_FOUND;
+
+        MetricsRegistry metrics = simplifier.getMetricsRegistry();
+
+        if (metrics != null) {
+            metrics.recordAuthorization(message.getFunction(), System.nanoTime() - start,
+                    result == AuthorizationTable.AUTHORIZED);
+        }
+
+        return result;
+    }
+
+    /*
+     * Log a refused request and return the response to send, if any
+     */
+    private FunctionResponseMessage refuse(ContractPermission permission, int result) {
+
+        if (result == AuthorizationTable.SENDER_NOT_FOUND) {
+            // Unknown senders can flood the provider: don't pay for an error log
+            LOGGER.debug("Error performing function: {}", AuthorizationTable.describe(result));
+        } else {
+            LOGGER.error("Error performing function: {}", AuthorizationTable.describe(result));
+        }
+
+        if (fastFail) {
+            return createDenyResponse(permission, ResponseCodes.fromAuthorizationResult(result),
+                    AuthorizationTable.describe(result));
+        }
+
         return null;
     }
 
+    /*
+     * Log a failed request and return the response to send, if any
+     */
+    private FunctionResponseMessage fail(ContractPermission permission, Exception e) {
+
+        LOGGER.error("Error performing function: ", e);
+
+        if (fastFail) {
+            return createDenyResponse(permission, FunctionResponseMessage.RESULT_ERROR,
+                    "Error performing function: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /*
+     * Build the response sent to the user when its request is refused
+     */
+    private static FunctionResponseMessage createDenyResponse(ContractPermission permission, int error, String result) {
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setError(error);
+        response.setResult(result);
+
+        if (permission != null) {
+            response.setProvider(permission.getProviderAddress());
+        }
+
+        return response;
+    }
+
     @Override
     public void handleUniquidCapability(CapabilityMessage message) {
         LOGGER.info("Received capability!");
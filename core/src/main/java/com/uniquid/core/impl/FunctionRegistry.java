@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.core.provider.Function;
+import com.uniquid.core.provider.FunctionConfig;
+import com.uniquid.core.provider.exception.FunctionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of the {@link Function}s indexed by function number. The registry is an array that is copied on
+ * every change and published atomically: the lookup done for every request is a single array load without locks,
+ * while functions can be added, replaced or removed at runtime.
+ * <p>
+ * The executions of a function are counted with {@link #acquire(int, Function)}: a function replaced or removed is
+ * destroyed only when its last running execution completes.
+ */
+public class FunctionRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FunctionRegistry.class.getName());
+
+    /**
+     * Number of function slots. It covers the 144 bits of the contract bitmask and the single function byte of
+     * the contracts with version 1.
+     */
+    public static final int CAPACITY = 256;
+
+    private volatile Entry[] entries = new Entry[CAPACITY];
+
+    /*
+     * A registered function with the number of its running executions. Shared by the entries that only change
+     * the bulkhead of the function.
+     */
+    private static final class Handle {
+
+        // Set in the count once the function is unpublished
+        private static final int RETIRED = Integer.MIN_VALUE;
+
+        private final Function function;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Handle(Function function) {
+            this.function = function;
+        }
+
+        private boolean acquire() {
+
+            while (true) {
+
+                int current = count.get();
+
+                if ((current & RETIRED) != 0) {
+                    return false;
+                }
+
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+
+            }
+
+        }
+
+        private void release() {
+
+            if (count.decrementAndGet() == RETIRED) {
+                destroy();
+            }
+
+        }
+
+        private void retire() {
+
+            if (count.getAndUpdate(current -> current | RETIRED) == 0) {
+                destroy();
+            }
+
+        }
+
+        private void destroy() {
+
+            try {
+
+                function.destroy();
+
+            } catch (Exception ex) {
+                LOGGER.error("Error while destroying function", ex);
+            }
+
+        }
+
+    }
+
+    /**
+     * A registered function with its optional {@link Bulkhead}
+     */
+    public static final class Entry {
+
+        private final Handle handle;
+        private final Bulkhead bulkhead;
+
+        Entry(Handle handle, Bulkhead bulkhead) {
+            this.handle = handle;
+            this.bulkhead = bulkhead;
+        }
+
+        public Function getFunction() {
+            return handle.function;
+        }
+
+        public Bulkhead getBulkhead() {
+            return bulkhead;
+        }
+
+    }
+
+    /**
+     * Returns the {@link Entry} registered with the specified number or null
+     *
+     * @param functionNumber the function number
+     * @return the {@link Entry} registered with the specified number or null
+     */
+    public Entry get(int functionNumber) {
+
+        if (functionNumber < 0 || functionNumber >= CAPACITY) {
+            return null;
+        }
+
+        return entries[functionNumber];
+    }
+
+    /**
+     * Returns the {@link Function} registered with the specified number or null
+     *
+     * @param functionNumber the function number
+     * @return the {@link Function} registered with the specified number or null
+     */
+    public Function getFunction(int functionNumber) {
+
+        Entry entry = get(functionNumber);
+
+        return entry != null ? entry.handle.function : null;
+    }
+
+    /**
+     * Count a new execution of the {@link Function} registered with the specified number
+     *
+     * @param functionNumber the function number
+     * @param function the {@link Function} returned by {@link #getFunction(int)}
+     * @return the action to run when the execution completes, or null if the function is no longer registered
+     */
+    public Runnable acquire(int functionNumber, Function function) {
+
+        Entry entry = get(functionNumber);
+
+        if (entry == null || entry.handle.function != function || !entry.handle.acquire()) {
+            return null;
+        }
+
+        return entry.handle::release;
+    }
+
+    /**
+     * Initialize a {@link Function} and publish it with the specified number. A function previously registered with
+     * the same number is replaced: it is destroyed once the new one is published and its running executions are
+     * completed, and its bulkhead is shut down. Registering again the same instance only changes its bulkhead: the
+     * function is not initialized twice.
+     *
+     * @param functionNumber the function number
+     * @param function the {@link Function} to register
+     * @param config the {@link FunctionConfig} to initialize the function with
+     * @param bulkhead the {@link Bulkhead} that will execute the function or null
+     * @throws FunctionException in case the number is out of range or the initialization fails
+     */
+    public synchronized void register(int functionNumber, Function function, FunctionConfig config, Bulkhead bulkhead)
+            throws FunctionException {
+
+        checkRange(functionNumber);
+
+        Entry current = get(functionNumber);
+        boolean registered = current != null && current.handle.function == function;
+
+        if (!registered) {
+            // Initialize before publishing: a function that fails to start never receives requests
+            function.init(config);
+        }
+
+        Handle handle = registered ? current.handle : new Handle(function);
+
+        Entry previous = publish(functionNumber, new Entry(handle, bulkhead));
+
+        release(previous, handle, bulkhead);
+
+    }
+
+    /**
+     * Change the {@link Bulkhead} of a registered {@link Function}. The previous bulkhead is shut down.
+     *
+     * @param functionNumber the function number
+     * @param bulkhead the {@link Bulkhead} that will execute the function or null
+     * @throws FunctionException in case no function is registered with the specified number
+     */
+    public synchronized void setBulkhead(int functionNumber, Bulkhead bulkhead) throws FunctionException {
+
+        Entry current = get(functionNumber);
+
+        if (current == null) {
+
+            throw new FunctionException("Function not available!");
+
+        }
+
+        publish(functionNumber, new Entry(current.handle, bulkhead));
+
+        release(current, current.handle, bulkhead);
+
+    }
+
+    /**
+     * Remove the {@link Function} registered with the specified number. The function is destroyed once
+     * unpublished and its running executions are completed, and its bulkhead is shut down.
+     *
+     * @param functionNumber the function number
+     * @return true if a function was removed
+     */
+    public synchronized boolean unregister(int functionNumber) {
+
+        if (get(functionNumber) == null) {
+            return false;
+        }
+
+        Entry previous = publish(functionNumber, null);
+
+        release(previous, null, null);
+
+        return true;
+    }
+
+    /**
+     * Remove all the functions, destroying them and shutting down their bulkheads
+     */
+    public synchronized void clear() {
+
+        for (int i = 0; i < CAPACITY; i++) {
+            unregister(i);
+        }
+
+    }
+
+    /**
+     * Returns the number of registered functions
+     * @return the number of registered functions
+     */
+    public int size() {
+
+        int size = 0;
+
+        for (Entry entry : entries) {
+            if (entry != null) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    /*
+     * Copy the array, change a slot and publish the copy. Must be called holding the lock.
+     */
+    private Entry publish(int functionNumber, Entry entry) {
+
+        Entry[] copy = entries.clone();
+        Entry previous = copy[functionNumber];
+        copy[functionNumber] = entry;
+        entries = copy;
+
+        return previous;
+    }
+
+    /*
+     * Release the resources of an unpublished entry that are not reused by the new one
+     */
+    private static void release(Entry previous, Handle handle, Bulkhead bulkhead) {
+
+        if (previous == null) {
+            return;
+        }
+
+        if (previous.handle != handle) {
+            previous.handle.retire();
+        }
+
+        if (previous.bulkhead != null && previous.bulkhead != bulkhead) {
+            previous.bulkhead.shutdown();
+        }
+
+    }
+
+    private static void checkRange(int functionNumber) throws FunctionException {
+
+        if (functionNumber < 0 || functionNumber >= CAPACITY) {
+
+            throw new FunctionException("Invalid function number!");
+
+        }
+
+    }
+
+}
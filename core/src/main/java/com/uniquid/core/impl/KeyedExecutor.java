@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the tasks that share a key one after the other, in the order they are submitted, and the tasks of different
+ * keys in parallel on an {@link Executor}.
+ * <p>
+ * A task completes when the {@link CompletionStage} it returns completes: the next task of the same key doesn't
+ * start before, even if the first one continues asynchronously. At most maxQueuedPerKey tasks can wait behind the
+ * running one; a key without tasks takes no memory.
+ */
+public class KeyedExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyedExecutor.class.getName());
+
+    private static final class Task {
+
+        private final Supplier<? extends CompletionStage<?>> body;
+        private final Runnable refusal;
+
+        private Task(Supplier<? extends CompletionStage<?>> body, Runnable refusal) {
+            this.body = body;
+            this.refusal = refusal;
+        }
+
+    }
+
+    private final Executor executor;
+    private final int maxQueuedPerKey;
+    private final ConcurrentHashMap<Object, ArrayDeque<Task>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param executor the {@link Executor} that runs the tasks
+     * @param maxQueuedPerKey the maximum number of tasks of a key waiting for the running one
+     */
+    public KeyedExecutor(Executor executor, int maxQueuedPerKey) {
+        this.executor = executor;
+        this.maxQueuedPerKey = maxQueuedPerKey;
+    }
+
+    /**
+     * Submit a task that completes when it returns
+     *
+     * @param key the key of the task
+     * @param task the task to run
+     * @param refusal run instead of the task if the {@link Executor} refuses it
+     * @return false if the task is refused because too many tasks of the same key are waiting
+     */
+    public boolean execute(Object key, Runnable task, Runnable refusal) {
+
+        return submit(key, () -> {
+
+            task.run();
+
+            return CompletableFuture.completedFuture(null);
+
+        }, refusal);
+
+    }
+
+    /**
+     * Submit a task that completes when the {@link CompletionStage} it returns completes. When the {@link Executor}
+     * refuses the task, the refusal runs instead on the thread that submitted it or, if the task was waiting, on the
+     * thread that completed the previous task of the key; the next task of the key is then started.
+     *
+     * @param key the key of the task
+     * @param task the task to run
+     * @param refusal run instead of the task if the {@link Executor} refuses it
+     * @return false if the task is refused because too many tasks of the same key are waiting
+     */
+    public boolean submit(Object key, Supplier<? extends CompletionStage<?>> task, Runnable refusal) {
+
+        Task entry = new Task(task, refusal);
+
+        boolean[] result = new boolean[2];
+
+        // The presence of a queue means a task of the key is running
+        queues.compute(key, (k, queue) -> {
+
+            result[0] = true;
+
+            if (queue == null) {
+                result[1] = true;
+                return new ArrayDeque<>();
+            }
+
+            if (queue.size() >= maxQueuedPerKey) {
+                result[0] = false;
+            } else {
+                queue.add(entry);
+                queued.incrementAndGet();
+            }
+
+            return queue;
+
+        });
+
+        if (result[1]) {
+            run(key, entry);
+        }
+
+        return result[0];
+    }
+
+    /**
+     * Returns the number of keys with a running task
+     * @return the number of keys with a running task
+     */
+    public int getActiveKeyCount() {
+        return queues.size();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a running task of the same key
+     * @return the number of tasks waiting
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    private void run(Object key, Task task) {
+
+        while (task != null) {
+
+            final Task current = task;
+
+            try {
+
+                executor.execute(() -> {
+
+                    CompletionStage<?> stage = null;
+
+                    try {
+
+                        stage = current.body.get();
+
+                    } catch (Exception e) {
+                        LOGGER.error("Error while running task", e);
+                    }
+
+                    if (stage != null) {
+                        stage.whenComplete((result, throwable) -> completed(key));
+                    } else {
+                        completed(key);
+                    }
+
+                });
+
+                return;
+
+            } catch (RejectedExecutionException e) {
+
+                LOGGER.warn("Executor refused task");
+
+                try {
+                    current.refusal.run();
+                } catch (Exception ex) {
+                    LOGGER.error("Error while refusing task", ex);
+                }
+
+                // A refused task doesn't strand the ones waiting behind it
+                task = next(key);
+
+            }
+
+        }
+
+    }
+
+    /*
+     * Start the next task of the key or forget the key
+     */
+    private void completed(Object key) {
+
+        run(key, next(key));
+
+    }
+
+    /*
+     * Returns the next task of the key or null after forgetting the key
+     */
+    private Task next(Object key) {
+
+        Object[] next = new Object[1];
+
+        queues.compute(key, (k, queue) -> {
+
+            next[0] = queue.poll();
+
+            return next[0] != null ? queue : null;
+
+        });
+
+        if (next[0] != null) {
+            queued.decrementAndGet();
+        }
+
+        return (Task) next[0];
+
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.core.Listener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a {@link Listener} running: when its connection fails or is lost the listener is started again, and so
+ * connects and subscribes again, after an exponential backoff.
+ * <p>
+ * The backoff doubles after every consecutive failure up to a maximum, and is randomized between half and the
+ * whole value so that the providers disconnected by a broker restart don't reconnect all together. A connection
+ * that stayed up longer than the maximum backoff resets it.
+ */
+public class ListenerSupervisor implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ListenerSupervisor.class.getName());
+
+    private final Listener listener;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder reconnects = new LongAdder();
+    private volatile int consecutiveFailures;
+    private volatile Exception lastFailure;
+    private volatile boolean stopped;
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private volatile Thread thread;
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param listener the {@link Listener} to supervise
+     * @param initialBackoff the wait before the first restart
+     * @param maxBackoff the maximum wait between two restarts
+     * @param unit the {@link TimeUnit} of initialBackoff and maxBackoff
+     */
+    public ListenerSupervisor(Listener listener, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this.listener = listener;
+        this.initialBackoffMillis = Math.max(1, unit.toMillis(initialBackoff));
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, unit.toMillis(maxBackoff));
+    }
+
+    @Override
+    public void run() {
+
+        thread = Thread.currentThread();
+
+        try {
+
+            supervise();
+
+        } finally {
+            thread = null;
+        }
+
+    }
+
+    /**
+     * Stop the listener: it stops accepting messages, drains the messages in flight and is not restarted.
+     * The messages being handled are not interrupted.
+     */
+    public void stop() {
+
+        stopped = true;
+
+        listener.stop();
+
+        // Wake up a supervisor waiting to restart the listener
+        stopping.countDown();
+
+    }
+
+    /**
+     * Returns true if the listener is running or waiting to be restarted
+     * @return true if the supervisor is running
+     */
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    private void supervise() {
+
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+
+            long started = System.currentTimeMillis();
+
+            try {
+
+                listener.serve();
+
+                // Stopped on request
+                return;
+
+            } catch (InterruptedException e) {
+
+                LOGGER.info("Received request to stop. Exiting");
+                Thread.currentThread().interrupt();
+                return;
+
+            } catch (Exception e) {
+
+                lastFailure = e;
+
+            }
+
+            if (stopped) {
+                return;
+            }
+
+            if (System.currentTimeMillis() - started >= maxBackoffMillis) {
+                consecutiveFailures = 0;
+            }
+
+            long backoff = getBackoff(consecutiveFailures);
+
+            consecutiveFailures++;
+            reconnects.increment();
+
+            LOGGER.error("Listener on topic {} failed, restarting in {} ms", listener.getTopic(), backoff, lastFailure);
+
+            try {
+
+                if (stopping.await(backoff, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                return;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns the wait before the restart that follows the specified number of consecutive failures
+     *
+     * @param failures the number of consecutive failures before the last one
+     * @return the wait in milliseconds, between half and the whole exponential backoff
+     */
+    long getBackoff(int failures) {
+
+        // Past 30 doublings the maximum is reached anyway: don't overflow
+        long backoff = initialBackoffMillis << Math.min(failures, 30);
+
+        if (backoff <= 0 || backoff > maxBackoffMillis) {
+            backoff = maxBackoffMillis;
+        }
+
+        long half = backoff / 2;
+
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    /**
+     * Returns the supervised {@link Listener}
+     * @return the supervised {@link Listener}
+     */
+    public Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns true if the listener is connected
+     * @return true if the listener is connected
+     */
+    public boolean isConnected() {
+        return listener.getConnectedSince() != 0;
+    }
+
+    /**
+     * Returns the time since the listener connected, or 0 if it is not connected
+     *
+     * @param unit the {@link TimeUnit} of the result
+     * @return the uptime of the current connection
+     */
+    public long getUptime(TimeUnit unit) {
+
+        long connectedSince = listener.getConnectedSince();
+
+        return connectedSince != 0 ? unit.convert(System.currentTimeMillis() - connectedSince, TimeUnit.MILLISECONDS)
+                : 0;
+    }
+
+    /**
+     * Returns the number of times the listener was restarted
+     * @return the number of restarts
+     */
+    public long getReconnectCount() {
+        return reconnects.sum();
+    }
+
+    /**
+     * Returns the number of failures since the last stable connection
+     * @return the number of consecutive failures
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns the cause of the last failure or null
+     * @return the cause of the last failure or null
+     */
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Queues of the messages waiting for a worker of a pipelined {@link com.uniquid.core.Listener}, one per
+ * {@link Lane}, served with a smooth weighted round robin.
+ * <p>
+ * Every non empty lane gets a share of the workers proportional to its weight, so that a flood of function requests
+ * can't delay the capability messages that grant or revoke contracts. An empty lane doesn't accumulate credit.
+ * <p>
+ * Tasks are not bound to the thread that submits them: every call to {@link #runNext()} runs the task chosen by the
+ * scheduler, so the executor must receive one {@link #runNext()} for every task submitted.
+ */
+public class PriorityLanes {
+
+    /**
+     * The lanes of the messages
+     */
+    public enum Lane {
+
+        /** Capability messages */
+        CAPABILITY,
+
+        /** Announce messages */
+        ANNOUNCE,
+
+        /** Function requests of the users whose contract has the owner bit set */
+        OWNER,
+
+        /** Every other message */
+        REQUEST
+
+    }
+
+    private static final Lane[] LANES = Lane.values();
+
+    private final int[] weights;
+    private final int[] credits = new int[LANES.length];
+    private final ArrayDeque<Runnable>[] queues;
+
+    /**
+     * Returns the default weights: capability 8, announce 4, owner 4, request 1
+     * @return the default weights, indexed by {@link Lane#ordinal()}
+     */
+    public static int[] defaultWeights() {
+        return new int[] { 8, 4, 4, 1 };
+    }
+
+    /**
+     * Creates an instance with the specified weights
+     *
+     * @param weights the weight of every lane, indexed by {@link Lane#ordinal()}
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityLanes(int[] weights) {
+
+        if (weights.length != LANES.length) {
+            throw new IllegalArgumentException("Expected " + LANES.length + " weights");
+        }
+
+        for (int weight : weights) {
+
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weights must be positive");
+            }
+
+        }
+
+        this.weights = Arrays.copyOf(weights, weights.length);
+        this.queues = new ArrayDeque[LANES.length];
+
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+
+    }
+
+    /**
+     * Queue a task in a lane
+     *
+     * @param lane the lane of the task
+     * @param task the task to queue
+     */
+    public synchronized void submit(Lane lane, Runnable task) {
+        queues[lane.ordinal()].add(task);
+    }
+
+    /**
+     * Run the next task chosen by the scheduler, if any
+     */
+    public void runNext() {
+
+        Runnable task = poll();
+
+        if (task != null) {
+            task.run();
+        }
+
+    }
+
+    /**
+     * Remove the next task chosen by the scheduler
+     *
+     * @return the next task or null if all the lanes are empty
+     */
+    public synchronized Runnable poll() {
+
+        int selected = -1;
+        int active = 0;
+
+        for (int i = 0; i < queues.length; i++) {
+
+            if (queues[i].isEmpty()) {
+                // Idle lanes don't save credit for later bursts
+                credits[i] = 0;
+                continue;
+            }
+
+            credits[i] += weights[i];
+            active += weights[i];
+
+            if (selected < 0 || credits[i] > credits[selected]) {
+                selected = i;
+            }
+
+        }
+
+        if (selected < 0) {
+            return null;
+        }
+
+        credits[selected] -= active;
+
+        return queues[selected].poll();
+    }
+
+    /**
+     * Returns the number of tasks waiting in a lane
+     *
+     * @param lane the lane
+     * @return the number of tasks waiting in the lane
+     */
+    public synchronized int getPendingCount(Lane lane) {
+        return queues[lane.ordinal()].size();
+    }
+
+    /**
+     * Returns the number of tasks waiting in all the lanes
+     * @return the number of tasks waiting
+     */
+    public synchronized int getPendingCount() {
+
+        int pending = 0;
+
+        for (ArrayDeque<Runnable> queue : queues) {
+            pending += queue.size();
+        }
+
+        return pending;
+    }
+
+    /**
+     * Returns the weight of a lane
+     *
+     * @param lane the lane
+     * @return the weight of the lane
+     */
+    public int getWeight(Lane lane) {
+        return weights[lane.ordinal()];
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket rate limiter keyed by user address, with optional additional limits per function number.
+ * <p>
+ * Every bucket is a single {@link AtomicLong} holding the theoretical arrival time of the next request
+ * (generic cell rate algorithm): a request is admitted with one compare and set, without locks, and a user
+ * costs a fixed amount of memory. A bucket that is full again is equivalent to a missing one, so the buckets of
+ * the idle users are dropped when the number of tracked users grows.
+ */
+public class RateLimiter {
+
+    /**
+     * A rate limit: the sustained number of requests per second and the number of requests allowed in a burst
+     */
+    public static final class Limit {
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+
+        /**
+         * Creates a limit
+         *
+         * @param permitsPerSecond the sustained number of requests per second
+         * @param burst the number of requests that can be sent at once
+         */
+        public Limit(double permitsPerSecond, int burst) {
+
+            if (permitsPerSecond <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+            }
+
+            this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.toleranceNanos = intervalNanos * (burst - 1);
+        }
+
+    }
+
+    private static final class UserBuckets {
+
+        private final AtomicLong user = new AtomicLong(Long.MIN_VALUE);
+        private volatile Map<Integer, AtomicLong> functions;
+
+        private AtomicLong function(int functionNumber) {
+
+            Map<Integer, AtomicLong> map = functions;
+
+            if (map == null) {
+
+                synchronized (this) {
+
+                    map = functions;
+                    if (map == null) {
+                        functions = map = new ConcurrentHashMap<>();
+                    }
+
+                }
+
+            }
+
+            return map.computeIfAbsent(functionNumber, k -> new AtomicLong(Long.MIN_VALUE));
+        }
+
+        private boolean isIdle(long now) {
+
+            if (!isFull(user.get(), now)) {
+                return false;
+            }
+
+            Map<Integer, AtomicLong> map = functions;
+
+            if (map != null) {
+
+                for (AtomicLong bucket : map.values()) {
+                    if (!isFull(bucket.get(), now)) {
+                        return false;
+                    }
+                }
+
+            }
+
+            return true;
+        }
+
+    }
+
+    private final Limit defaultLimit;
+    private final int maxTrackedUsers;
+
+    private final Map<String, Limit> userLimits = new ConcurrentHashMap<>();
+    private final Map<Integer, Limit> functionLimits = new ConcurrentHashMap<>();
+    private final Map<String, UserBuckets> buckets = new ConcurrentHashMap<>();
+
+    private volatile int sweepThreshold;
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param defaultLimit the {@link Limit} applied to the users without a specific limit or null for no limit
+     * @param maxTrackedUsers the number of users above which the buckets of the idle users are dropped
+     */
+    public RateLimiter(Limit defaultLimit, int maxTrackedUsers) {
+        this.defaultLimit = defaultLimit;
+        this.maxTrackedUsers = maxTrackedUsers;
+        this.sweepThreshold = maxTrackedUsers;
+    }
+
+    /**
+     * Set the {@link Limit} of a user, replacing the default one
+     *
+     * @param userAddress the address of the user
+     * @param limit the {@link Limit} of the user or null to apply the default limit
+     */
+    public void setUserLimit(String userAddress, Limit limit) {
+
+        if (limit != null) {
+            userLimits.put(userAddress, limit);
+        } else {
+            userLimits.remove(userAddress);
+        }
+
+    }
+
+    /**
+     * Set a {@link Limit} applied to every user on a function, in addition to the user limit
+     *
+     * @param functionNumber the function number
+     * @param limit the {@link Limit} of the function or null to remove it
+     */
+    public void setFunctionLimit(int functionNumber, Limit limit) {
+
+        if (limit != null) {
+            functionLimits.put(functionNumber, limit);
+        } else {
+            functionLimits.remove(functionNumber);
+        }
+
+    }
+
+    /**
+     * Consume a token of the user for a function
+     *
+     * @param userAddress the address of the user
+     * @param functionNumber the function number
+     * @return true if the request can be executed, false if it must be throttled
+     */
+    public boolean tryAcquire(String userAddress, int functionNumber) {
+
+        if (userAddress == null) {
+            return true;
+        }
+
+        Limit userLimit = userLimits.get(userAddress);
+        if (userLimit == null) {
+            userLimit = defaultLimit;
+        }
+
+        Limit functionLimit = functionLimits.isEmpty() ? null : functionLimits.get(functionNumber);
+
+        if (userLimit == null && functionLimit == null) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+
+        UserBuckets userBuckets = getBuckets(userAddress);
+
+        AtomicLong functionBucket = null;
+
+        if (functionLimit != null) {
+
+            functionBucket = userBuckets.function(functionNumber);
+
+            if (!acquire(functionBucket, functionLimit, now)) {
+                throttled.increment();
+                return false;
+            }
+
+        }
+
+        if (userLimit != null && !acquire(userBuckets.user, userLimit, now)) {
+
+            if (functionBucket != null) {
+                // Give back the token of the function
+                functionBucket.addAndGet(-functionLimit.intervalNanos);
+            }
+
+            throttled.increment();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the number of requests throttled
+     * @return the number of requests throttled
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * Returns the number of users with a bucket
+     * @return the number of users with a bucket
+     */
+    public int getTrackedUsers() {
+        return buckets.size();
+    }
+
+    /**
+     * Drop the buckets of the users that are full again
+     *
+     * @return the number of users dropped
+     */
+    public int evictIdle() {
+
+        long now = System.nanoTime();
+        int evicted = 0;
+
+        for (Map.Entry<String, UserBuckets> entry : buckets.entrySet()) {
+
+            if (entry.getValue().isIdle(now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+
+        }
+
+        return evicted;
+    }
+
+    private UserBuckets getBuckets(String userAddress) {
+
+        UserBuckets userBuckets = buckets.get(userAddress);
+
+        if (userBuckets == null) {
+
+            if (buckets.size() >= sweepThreshold) {
+
+                evictIdle();
+
+                // Don't sweep again on every new user if most of them are active
+                sweepThreshold = Math.max(maxTrackedUsers, buckets.size() * 2);
+
+            }
+
+            userBuckets = buckets.computeIfAbsent(userAddress, k -> new UserBuckets());
+
+        }
+
+        return userBuckets;
+    }
+
+    /*
+     * A bucket never used or whose theoretical arrival time is elapsed is full
+     */
+    private static boolean isFull(long tat, long now) {
+        return tat == Long.MIN_VALUE || now - tat >= 0;
+    }
+
+    /*
+     * Generic cell rate algorithm: admit if the theoretical arrival time is not beyond the burst tolerance
+     */
+    private static boolean acquire(AtomicLong bucket, Limit limit, long now) {
+
+        while (true) {
+
+            long tat = bucket.get();
+
+            long base = isFull(tat, now) ? now : tat;
+
+            if (base - now > limit.toleranceNanos) {
+                return false;
+            }
+
+            if (bucket.compareAndSet(tat, base + limit.intervalNanos)) {
+                return true;
+            }
+
+        }
+
+    }
+
+}
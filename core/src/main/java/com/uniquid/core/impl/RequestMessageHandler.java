@@ -11,16 +11,46 @@ import com.uniquid.core.MessageHandler;
 import com.uniquid.messages.CapabilityMessage;
 import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.messages.MessageType;
 import com.uniquid.messages.UniquidMessage;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public abstract class RequestMessageHandler implements MessageHandler {
 
-    protected UniquidSimplifier simplifier;
+    /**
+     * Function number reserved to the batch requests: the parameters carry a JSON array of
+     * {"function": number, "parameters": string} entries and the result a JSON array of
+     * {"function": number, "error": code, "result": string} entries, in the same order.
+     * Like the other internal functions it belongs to the reserved range 0-31, see
+     * {@link UniquidSimplifier#addFunction(com.uniquid.core.provider.Function, int)}.
+     */
+    public static final int BATCH_FUNCTION = 28;
+
+    /**
+     * Maximum number of entries in a batch request
+     */
+    public static final int MAX_BATCH_SIZE = 64;
+
+    // Written by every worker of a pipelined listener: always the same instance
+    protected volatile UniquidSimplifier simplifier;
 
     public abstract FunctionResponseMessage handleFunctionRequest(FunctionRequestMessage message);
 
     public abstract void handleUniquidCapability(CapabilityMessage message);
 
+    /**
+     * Handle a function request without blocking the calling thread. The default implementation delegates to
+     * {@link #handleFunctionRequest(FunctionRequestMessage)}.
+     *
+     * @param message the request to handle
+     * @return a {@link CompletionStage} that completes with the response to send or null
+     */
+    public CompletionStage<FunctionResponseMessage> handleFunctionRequestAsync(FunctionRequestMessage message) {
+        return CompletableFuture.completedFuture(handleFunctionRequest(message));
+    }
+
     @Override
     public FunctionResponseMessage handleMessage(UniquidSimplifier simplifier, UniquidMessage message) {
         if (message != null) {
@@ -37,4 +67,15 @@ public abstract class RequestMessageHandler implements MessageHandler {
         }
         return null;
     }
+
+    @Override
+    public CompletionStage<FunctionResponseMessage> handleMessageAsync(UniquidSimplifier simplifier, UniquidMessage message) {
+        if (message != null) {
+            this.simplifier = simplifier;
+            if (MessageType.FUNCTION_REQUEST.equals(message.getMessageType())) {
+                return handleFunctionRequestAsync((FunctionRequestMessage) message);
+            }
+        }
+        return CompletableFuture.completedFuture(handleMessage(simplifier, message));
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.connector.EndPoint;
+import com.uniquid.core.metrics.MetricsRegistry;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writer stage of a pipelined {@link com.uniquid.core.Listener}: responses produced by the worker threads are
+ * queued here and written back to their {@link EndPoint} by a single thread, in the order they were completed.
+ * All the responses available are drained and flushed in one batch.
+ */
+public class ResponseWriter implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseWriter.class.getName());
+
+    private final BlockingQueue<PendingResponse> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final MetricsRegistry metrics;
+    private volatile boolean running = true;
+
+    /**
+     * Creates an instance that flushes at most maxBatchSize responses per batch
+     *
+     * @param maxBatchSize the maximum number of responses to flush in one batch
+     */
+    public ResponseWriter(int maxBatchSize) {
+        this(maxBatchSize, null);
+    }
+
+    /**
+     * Creates an instance that flushes at most maxBatchSize responses per batch and records the time spent
+     * flushing every response
+     *
+     * @param maxBatchSize the maximum number of responses to flush in one batch
+     * @param metrics the {@link MetricsRegistry} to record the flushes in or null
+     */
+    public ResponseWriter(int maxBatchSize, MetricsRegistry metrics) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queue a response to be written to its {@link EndPoint}
+     *
+     * @param endPoint the {@link EndPoint} that received the request
+     * @param response the response to write
+     */
+    public void write(EndPoint endPoint, FunctionResponseMessage response) {
+        queue.add(new PendingResponse(endPoint, response));
+    }
+
+    /**
+     * Ask the writer to terminate once all the queued responses are flushed
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Returns the number of responses waiting to be flushed
+     * @return the number of responses waiting to be flushed
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+
+        List<PendingResponse> batch = new ArrayList<>(maxBatchSize);
+
+        try {
+
+            while (running || !queue.isEmpty()) {
+
+                PendingResponse first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+
+                for (PendingResponse pendingResponse : batch) {
+                    pendingResponse.flush(metrics);
+                }
+
+                batch.clear();
+
+            }
+
+        } catch (InterruptedException e) {
+            LOGGER.warn("Response writer interrupted with {} responses not flushed", queue.size() + batch.size());
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    /**
+     * Record the time spent flushing the response to a function request
+     *
+     * @param metrics the {@link MetricsRegistry} to record the flush in or null
+     * @param endPoint the {@link EndPoint} flushed
+     * @param start the {@link System#nanoTime()} at which the flush started
+     */
+    public static void recordFlush(MetricsRegistry metrics, EndPoint endPoint, long start) {
+
+        if (metrics != null && endPoint.getRequest() instanceof FunctionRequestMessage) {
+            metrics.recordFlush(((FunctionRequestMessage) endPoint.getRequest()).getFunction(),
+                    System.nanoTime() - start);
+        }
+
+    }
+
+    /*
+     * A response waiting to be written
+     */
+    private static class PendingResponse {
+
+        private final EndPoint endPoint;
+        private final FunctionResponseMessage response;
+
+        PendingResponse(EndPoint endPoint, FunctionResponseMessage response) {
+            this.endPoint = endPoint;
+            this.response = response;
+        }
+
+        void flush(MetricsRegistry metrics) {
+
+            try {
+
+                long start = System.nanoTime();
+
+                endPoint.setResponse(response);
+                endPoint.flush();
+
+                recordFlush(metrics, endPoint, start);
+
+            } catch (Exception e) {
+                LOGGER.error("Error while flushing response", e);
+            }
+
+        }
+
+    }
+
+}
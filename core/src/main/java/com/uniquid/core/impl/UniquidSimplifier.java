@@ -10,12 +10,15 @@ package com.uniquid.core.impl;
 import com.uniquid.connector.Connector;
 import com.uniquid.core.Core;
 import com.uniquid.core.Listener;
+import com.uniquid.core.interceptor.RequestInterceptor;
+import com.uniquid.core.metrics.MetricsRegistry;
 import com.uniquid.core.provider.Function;
 import com.uniquid.core.provider.exception.FunctionException;
 import com.uniquid.core.provider.impl.ContractFunction;
 import com.uniquid.core.provider.impl.EchoFunction;
 import com.uniquid.core.provider.impl.FunctionConfigImpl;
 import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
 import com.uniquid.node.UniquidNode;
 import com.uniquid.node.UniquidNodeState;
 import com.uniquid.node.exception.NodeException;
@@ -25,9 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.*;
 
 /**
@@ -37,12 +39,24 @@ public class UniquidSimplifier extends Core {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Core.class.getName());
 
-    private final Map<Integer, Function> functionsMap = new HashMap<>();
+    private static final int CONTRACT_FUNCTION = 30;
+    private static final long SYNC_PENDING_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final FunctionRegistry functionRegistry = new FunctionRegistry();
 
     private ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new ContextPropagatingThreadFactory("scheduledExecutorService"));
 
     private List<Listener> listeners = new ArrayList<>();
-    private ExecutorService threadPool = Executors.newCachedThreadPool(new ContextPropagatingThreadFactory("threadPool"));
+    private final List<ListenerSupervisor> supervisors = new CopyOnWriteArrayList<>();
+    private volatile long reconnectInitialBackoffMillis = TimeUnit.SECONDS.toMillis(1);
+    private volatile long reconnectMaxBackoffMillis = TimeUnit.MINUTES.toMillis(1);
+    private volatile long syncMinDelayMillis = TimeUnit.MINUTES.toMillis(1);
+    private volatile long syncMaxDelayMillis = TimeUnit.MINUTES.toMillis(15);
+    private volatile long syncPendingDelayMillis = TimeUnit.SECONDS.toMillis(10);
+    private volatile BlockchainSyncScheduler syncScheduler;
+    private CompletableFuture<Void> syncFuture;
+    private ThreadPoolExecutor threadPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new ContextPropagatingThreadFactory("threadPool"));
 
     /**
      * Creates an instance from {@link RegisterFactory}, {@link Connector} and {@link UniquidNode}
@@ -59,7 +73,7 @@ public class UniquidSimplifier extends Core {
         // Register core functions
         try {
 
-            addUniquidFunction(new ContractFunction(), 30);
+            addUniquidFunction(new ContractFunction(), CONTRACT_FUNCTION);
             addUniquidFunction(new EchoFunction(), 31);
 
         } catch (FunctionException ex) {
@@ -72,17 +86,40 @@ public class UniquidSimplifier extends Core {
 
         int rpcMethod = inputMessage.getFunction();
 
-        return functionsMap.get(rpcMethod);
+        return functionRegistry.getFunction(rpcMethod);
+
+    }
+
+    @Override
+    protected Runnable acquireFunction(FunctionRequestMessage inputMessage, Function function) {
+
+        return functionRegistry.acquire(inputMessage.getFunction(), function);
+
+    }
+
+    @Override
+    protected Bulkhead getBulkhead(FunctionRequestMessage inputMessage) {
+
+        FunctionRegistry.Entry entry = functionRegistry.get(inputMessage.getFunction());
+
+        return entry != null ? entry.getBulkhead() : null;
 
     }
 
     /**
-     * Register a {@link Function} inside the library with the specified number.
+     * Register a {@link Function} inside the library with the specified number. The executions of the function
+     * are isolated inside the specified {@link Bulkhead}. A function already registered with the same number is
+     * replaced without stopping the processing: it is destroyed once the new one is in place and the requests it was
+     * serving are completed.
+     * <p>
+     * The numbers from 0 to 31 are reserved to the internal functions and the numbers from
+     * {@link FunctionRegistry#CAPACITY} on are refused: a contract can't grant them.
      * @param function the {@link Function} to register inside the library.
      * @param functionNumber the number to assign to the {@link Function}
+     * @param bulkhead the {@link Bulkhead} that will execute the function or null
      * @throws FunctionException in case a problem occurs.
      */
-    public void addFunction(Function function, int functionNumber) throws FunctionException {
+    public void addFunction(Function function, int functionNumber, Bulkhead bulkhead) throws FunctionException {
 
         LOGGER.trace("Associating function {} with number {}", function.toString(), functionNumber );
 
@@ -90,9 +127,7 @@ public class UniquidSimplifier extends Core {
 
             FunctionConfigImpl functionConfigImpl = new FunctionConfigImpl(getFunctionContext());
 
-            function.init(functionConfigImpl);
-
-            functionsMap.put(functionNumber, function);
+            functionRegistry.register(functionNumber, function, functionConfigImpl, bulkhead);
 
         } else {
 
@@ -102,6 +137,58 @@ public class UniquidSimplifier extends Core {
 
     }
 
+    /**
+     * Isolate the executions of an already registered {@link Function}, including the internal ones, inside a
+     * {@link Bulkhead}. The previous bulkhead of the function, if any, is shut down.
+     * @param functionNumber the number of the {@link Function}
+     * @param bulkhead the {@link Bulkhead} that will execute the function or null to execute it on the calling thread
+     * @throws FunctionException in case no function is registered with the specified number.
+     */
+    public void setBulkhead(int functionNumber, Bulkhead bulkhead) throws FunctionException {
+
+        functionRegistry.setBulkhead(functionNumber, bulkhead);
+
+    }
+
+    /**
+     * Register a {@link Function} inside the library with the specified number. A function already registered with
+     * the same number is replaced without stopping the processing: it is destroyed once the new one is in place and the
+     * requests it was serving are completed.
+     * <p>
+     * The numbers from 0 to 31 are reserved to the internal functions: 28 for the batch requests
+     * ({@link RequestMessageHandler#BATCH_FUNCTION}), 30 for the contract function and 31 for the echo function.
+     * The numbers from {@link FunctionRegistry#CAPACITY} on are refused: a contract can't grant them.
+     * @param function the {@link Function} to register inside the library.
+     * @param functionNumber the number to assign to the {@link Function}
+     * @throws FunctionException in case a problem occurs.
+     */
+    public void addFunction(Function function, int functionNumber) throws FunctionException {
+
+        addFunction(function, functionNumber, null);
+
+    }
+
+    /**
+     * Unregister the {@link Function} with the specified number and destroy it. The requests already running
+     * complete before the function is destroyed, the following ones receive a function not available response.
+     * @param functionNumber the number of the {@link Function}
+     * @return true if a function was registered with the specified number
+     * @throws FunctionException in case the number belongs to an internal function.
+     */
+    public boolean removeFunction(int functionNumber) throws FunctionException {
+
+        if (functionNumber < 32) {
+
+            throw new FunctionException("Invalid function number!");
+
+        }
+
+        LOGGER.trace("Removing function with number {}", functionNumber);
+
+        return functionRegistry.unregister(functionNumber);
+
+    }
+
     /*
      * Register an internal Function
      */
@@ -113,9 +200,7 @@ public class UniquidSimplifier extends Core {
 
             FunctionConfigImpl functionConfigImpl = new FunctionConfigImpl(getFunctionContext());
 
-            function.init(functionConfigImpl);
-
-            functionsMap.put(value, function);
+            functionRegistry.register(value, function, functionConfigImpl, null);
 
         } else {
 
@@ -125,7 +210,15 @@ public class UniquidSimplifier extends Core {
 
     }
 
-    public void syncBlockchain() throws NodeException {
+    /**
+     * Initialize the node if needed and start synchronizing it with the blockchain through a
+     * {@link BlockchainSyncScheduler}: the delay between two synchronizations adapts to the activity, shortens
+     * while signed contracts wait for a confirmation and an announce triggers an immediate synchronization.
+     *
+     * @return a {@link Future} that completes when the synchronization stops and stops it when cancelled
+     * @throws NodeException in case the node can't be initialized
+     */
+    public synchronized Future<Void> syncBlockchain() throws NodeException {
         // initialize node if not yet initilized
         if (UniquidNodeState.CREATED.equals(getNode().getNodeState())) {
 
@@ -134,45 +227,241 @@ public class UniquidSimplifier extends Core {
 
         }
 
-        final Runnable walletSyncher = () -> {
-            try {
-                LOGGER.info("Updating node from the BlockChain");
-                // Update node from blockchain
-                getNode().updateNode();
-            } catch (Exception e) {
-                LOGGER.error("Exception while updating node from the BlockChain", e);
+        if (syncScheduler != null) {
+            syncScheduler.trigger();
+            return syncFuture;
+        }
+
+        final BlockchainSyncScheduler scheduler = new BlockchainSyncScheduler(getNode(), scheduledExecutorService,
+                syncMinDelayMillis, syncMaxDelayMillis, syncPendingDelayMillis, SYNC_PENDING_WINDOW_MILLIS,
+                TimeUnit.MILLISECONDS);
+
+        // A signed contract is confirmed by the next blocks: look for them sooner
+        final RequestInterceptor pendingContracts = (exchange, chain) -> {
+
+            CompletionStage<FunctionResponseMessage> stage = chain.proceed(exchange);
+
+            if (exchange.getRequest().getFunction() != CONTRACT_FUNCTION) {
+                return stage;
             }
+
+            return stage.thenApply(response -> {
+
+                if (response.getResult() != null && response.getResult().startsWith("0 - ")) {
+                    scheduler.markPending();
+                }
+
+                return response;
+            });
         };
 
-        final ScheduledFuture<?> walletSyncherFuture = scheduledExecutorService.scheduleWithFixedDelay(walletSyncher, 0, 1,
-                TimeUnit.MINUTES);
+        addInterceptor(pendingContracts);
+
+        CompletableFuture<Void> future = scheduler.start();
+
+        syncScheduler = scheduler;
+        syncFuture = future;
+
+        // A stopped synchronization can be started again
+        future.whenComplete((ignored, throwable) -> {
+            removeInterceptor(pendingContracts);
+            clearBlockchainSync(scheduler);
+        });
+
+        return future;
     }
 
     /**
-     * Stop the library and stop the processing
+     * Run a blockchain synchronization as soon as possible, if {@link #syncBlockchain()} was called
+     */
+    public void requestBlockchainSync() {
+
+        BlockchainSyncScheduler scheduler = syncScheduler;
+
+        if (scheduler != null) {
+            scheduler.trigger();
+        }
+
+    }
+
+    /*
+     * Stop the blockchain synchronization: a shut down executor still runs the synchronization already scheduled
+     */
+    private synchronized void stopBlockchainSync() {
+
+        if (syncFuture != null) {
+            syncFuture.cancel(false);
+        }
+
+        syncScheduler = null;
+        syncFuture = null;
+
+    }
+
+    /*
+     * Forget a stopped scheduler, unless another one replaced it
+     */
+    private synchronized void clearBlockchainSync(BlockchainSyncScheduler scheduler) {
+
+        if (syncScheduler == scheduler) {
+            syncScheduler = null;
+            syncFuture = null;
+        }
+
+    }
+
+    /**
+     * Returns the {@link BlockchainSyncScheduler} started by {@link #syncBlockchain()} or null
+     * @return the {@link BlockchainSyncScheduler} in use or null
+     */
+    public BlockchainSyncScheduler getBlockchainSyncScheduler() {
+        return syncScheduler;
+    }
+
+    /**
+     * Set the delays of the blockchain synchronization started after this call
+     *
+     * @param minDelay the delay after a synchronization with activity
+     * @param maxDelay the maximum delay when the blockchain is idle
+     * @param pendingDelay the maximum delay while signed contracts wait for a confirmation
+     * @param unit the {@link TimeUnit} of the delays
+     */
+    public void setSyncDelays(long minDelay, long maxDelay, long pendingDelay, TimeUnit unit) {
+        this.syncMinDelayMillis = unit.toMillis(minDelay);
+        this.syncMaxDelayMillis = unit.toMillis(maxDelay);
+        this.syncPendingDelayMillis = unit.toMillis(pendingDelay);
+    }
+
+    /**
+     * Install a {@link MetricsRegistry} that records the executions of the functions, together with the gauges of
+     * the thread pool and of the registered functions.
+     *
+     * @param metricsRegistry the {@link MetricsRegistry} to use or null to disable the metrics
+     */
+    @Override
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+
+        MetricsRegistry previous = getMetricsRegistry();
+
+        if (previous != null) {
+            previous.removeGauge("threadPool.size");
+            previous.removeGauge("threadPool.active");
+            previous.removeGauge("threadPool.queue");
+            previous.removeGauge("functions");
+            previous.removeGauge("listeners.connected");
+            previous.removeGauge("listeners.reconnects");
+        }
+
+        if (metricsRegistry != null) {
+            metricsRegistry.registerGauge("threadPool.size", threadPool::getPoolSize);
+            metricsRegistry.registerGauge("threadPool.active", threadPool::getActiveCount);
+            metricsRegistry.registerGauge("threadPool.queue", () -> threadPool.getQueue().size());
+            metricsRegistry.registerGauge("functions", functionRegistry::size);
+            metricsRegistry.registerGauge("listeners.connected",
+                    () -> supervisors.stream().filter(ListenerSupervisor::isConnected).count());
+            metricsRegistry.registerGauge("listeners.reconnects",
+                    () -> supervisors.stream().mapToLong(ListenerSupervisor::getReconnectCount).sum());
+        }
+
+        super.setMetricsRegistry(metricsRegistry);
+
+    }
+
+    /**
+     * Stop the library gracefully: the listeners stop accepting messages and complete the ones in flight, flushing
+     * their responses, then the functions are destroyed and the wallet synchronization is stopped. What is still
+     * running when the timeout expires is interrupted.
+     *
+     * @param timeout the maximum time to wait for the messages in flight
+     * @param unit the {@link TimeUnit} of the timeout
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        LOGGER.info("Draining and shutting down!");
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (ListenerSupervisor supervisor : supervisors) {
+            supervisor.getListener().setDrainTimeout(timeout, unit);
+            supervisor.stop();
+        }
+
+        threadPool.shutdown();
+
+        if (!threadPool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            LOGGER.warn("Listeners not drained before the deadline");
+        }
+
+        // No more requests: the functions can be taken out of service
+        functionRegistry.clear();
+
+        stopBlockchainSync();
+
+        scheduledExecutorService.shutdown();
+        scheduledExecutorService.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+        shutdown();
+
+    }
+
+    /**
+     * Stop the library and stop the processing immediately: the executions in flight are interrupted and their
+     * responses are not sent. See {@link #shutdown(long, TimeUnit)} for a graceful shutdown.
      *
      * @throws Exception in case a problem occurs
      */
     public void shutdown() {
         LOGGER.info("Shutting down!");
 
+        stopBlockchainSync();
+
         scheduledExecutorService.shutdown();
         threadPool.shutdownNow();
+
+        functionRegistry.clear();
+
+        shutdownDeadlineScheduler();
+
         listeners.clear();
+        supervisors.clear();
 
     }
 
     /**
-     * Add listener who can catch and handle incoming through the connector messages
+     * Add listener who can catch and handle incoming through the connector messages.
+     * The listener is supervised: when its connection fails it is restarted after a backoff.
      * @param listener
      * @return
      */
     public boolean addListener(Listener listener) {
         if (listeners.add(listener)) {
             listener.setParentSimplifier(this);
-            threadPool.execute(listener);
+            ListenerSupervisor supervisor = new ListenerSupervisor(listener, reconnectInitialBackoffMillis,
+                    reconnectMaxBackoffMillis, TimeUnit.MILLISECONDS);
+            supervisors.add(supervisor);
+            threadPool.execute(supervisor);
             return true;
         }
         return false;
     }
+
+    /**
+     * Set the backoff between the restarts of the listeners added after this call
+     *
+     * @param initialBackoff the wait before the first restart
+     * @param maxBackoff the maximum wait between two restarts
+     * @param unit the {@link TimeUnit} of initialBackoff and maxBackoff
+     */
+    public void setReconnectBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this.reconnectInitialBackoffMillis = unit.toMillis(initialBackoff);
+        this.reconnectMaxBackoffMillis = unit.toMillis(maxBackoff);
+    }
+
+    /**
+     * Returns the {@link ListenerSupervisor}s of the listeners added, with their connection statistics
+     * @return an unmodifiable list of {@link ListenerSupervisor}s
+     */
+    public List<ListenerSupervisor> getListenerSupervisors() {
+        return Collections.unmodifiableList(supervisors);
+    }
 }
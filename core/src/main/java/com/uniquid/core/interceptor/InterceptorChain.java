@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.interceptor;
+
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The rest of the processing of a request, given to a {@link RequestInterceptor}. The chain is built once, when the
+ * interceptors are installed.
+ */
+public interface InterceptorChain {
+
+    /**
+     * Invoke the next interceptor in the chain or, after the last one, the function
+     *
+     * @param exchange the {@link ProviderExchange} of the request
+     * @return a {@link CompletionStage} that completes with the response to send to the User
+     */
+    CompletionStage<FunctionResponseMessage> proceed(ProviderExchange exchange);
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.interceptor;
+
+import com.uniquid.core.Core;
+import com.uniquid.core.auth.ContractPermission;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.register.exception.RegisterException;
+
+import java.util.Arrays;
+
+/**
+ * A request going through the {@link InterceptorChain}: the request, the payload of the contract, the contract of
+ * the user and the time spent in every {@link Stage} of the processing.
+ * <p>
+ * The timings of a stage are available once the {@link java.util.concurrent.CompletionStage} returned by
+ * {@link InterceptorChain#proceed(ProviderExchange)} has passed it.
+ */
+public final class ProviderExchange {
+
+    /**
+     * The stages of the processing of a request after the interceptors
+     */
+    public enum Stage {
+
+        /**
+         * Check of the {@link com.uniquid.core.impl.RateLimiter}
+         */
+        RATE_LIMIT,
+
+        /**
+         * Lookup of the request in the {@link com.uniquid.core.cache.IdempotencyStore}
+         */
+        IDEMPOTENCY,
+
+        /**
+         * Lookup of the result in the {@link com.uniquid.core.cache.ResultCache}
+         */
+        CACHE,
+
+        /**
+         * Execution of the function, from its lookup to its response, including the wait in its bulkhead
+         */
+        EXECUTION
+
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final Core core;
+    private final FunctionRequestMessage request;
+    private final byte[] payload;
+    private final boolean deduplicate;
+    private final long startNanos;
+    private final long[] stageNanos = new long[STAGES.length];
+
+    private ContractPermission permission;
+    private boolean permissionResolved;
+
+    /**
+     * Creates the exchange of a request. Used by the function container.
+     *
+     * @param core the {@link Core} serving the request
+     * @param request the {@link FunctionRequestMessage} received from the User
+     * @param payload the payload from the contract
+     */
+    public ProviderExchange(Core core, FunctionRequestMessage request, byte[] payload) {
+        this(core, request, payload, true);
+    }
+
+    /**
+     * Creates the exchange of a request. Used by the function container.
+     *
+     * @param core the {@link Core} serving the request
+     * @param request the {@link FunctionRequestMessage} received from the User
+     * @param payload the payload from the contract
+     * @param deduplicate false if the request must not be deduplicated by its id
+     */
+    public ProviderExchange(Core core, FunctionRequestMessage request, byte[] payload, boolean deduplicate) {
+        this.core = core;
+        this.request = request;
+        this.payload = payload;
+        this.deduplicate = deduplicate;
+        this.startNanos = System.nanoTime();
+        Arrays.fill(stageNanos, -1);
+    }
+
+    /**
+     * Returns the request
+     * @return the {@link FunctionRequestMessage} received from the User
+     */
+    public FunctionRequestMessage getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the payload of the contract
+     * @return the payload from the contract
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns true if the request is deduplicated by its id when an
+     * {@link com.uniquid.core.cache.IdempotencyStore} is installed
+     * @return true if the request is deduplicated by its id
+     */
+    public boolean isDeduplicated() {
+        return deduplicate;
+    }
+
+    /**
+     * Returns the contract of the user, resolved on the first call
+     *
+     * @return the {@link ContractPermission} of the user or null if no contract exists
+     * @throws RegisterException in case a problem occurs.
+     */
+    public ContractPermission getPermission() throws RegisterException {
+
+        if (!permissionResolved) {
+            permission = core.getPermission(request.getUser());
+            permissionResolved = true;
+        }
+
+        return permission;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the request entered the chain
+     * @return the time the request entered the chain
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Returns the nanoseconds elapsed since the request entered the chain
+     * @return the nanoseconds elapsed since the request entered the chain
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Returns the nanoseconds spent in a stage
+     *
+     * @param stage the {@link Stage}
+     * @return the duration of the stage or -1 if the request didn't pass it
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Record the nanoseconds spent in a stage. Used by the function container.
+     *
+     * @param stage the {@link Stage}
+     * @param nanos the duration of the stage
+     */
+    public void recordStage(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] = nanos;
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.interceptor;
+
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An interceptor performs cross-cutting tasks on the requests served by {@link com.uniquid.core.Core}, on the
+ * request before the function is executed, on the response after, or both.
+ * <p>
+ * Interceptors are invoked in the order they were added. Each one decides whether to pass the request to the rest
+ * of the chain with {@link InterceptorChain#proceed(ProviderExchange)} or to answer it itself.
+ */
+public interface RequestInterceptor {
+
+    /**
+     * Called by the function container for every request
+     *
+     * @param exchange the {@link ProviderExchange} of the request
+     * @param chain the {@link InterceptorChain} to invoke the next interceptor and, at the end, the function
+     * @return a {@link CompletionStage} that completes with the response to send to the User
+     */
+    CompletionStage<FunctionResponseMessage> intercept(ProviderExchange exchange, InterceptorChain chain);
+
+}
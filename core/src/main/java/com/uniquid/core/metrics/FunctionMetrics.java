@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the requests for a function number
+ */
+public class FunctionMetrics implements FunctionMetricsMXBean {
+
+    private final int function;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder unauthorized = new LongAdder();
+    private final LongAdder notAvailable = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private final LatencyHistogram authorization = new LatencyHistogram();
+    private final LatencyHistogram execution = new LatencyHistogram();
+    private final LatencyHistogram flush = new LatencyHistogram();
+
+    /**
+     * Creates the metrics of a function
+     * @param function the function number
+     */
+    public FunctionMetrics(int function) {
+        this.function = function;
+    }
+
+    @Override
+    public int getFunction() {
+        return function;
+    }
+
+    /**
+     * Returns the number of requests executed, or answered from the cache
+     */
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of executions that didn't produce a result
+     */
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of requests refused by the authorization
+     */
+    @Override
+    public long getUnauthorized() {
+        return unauthorized.sum();
+    }
+
+    /**
+     * Returns the number of requests for a function not registered
+     */
+    @Override
+    public long getNotAvailable() {
+        return notAvailable.sum();
+    }
+
+    /**
+     * Returns the number of requests refused by the rate limiter
+     */
+    @Override
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getAuthorizationP99() {
+        return authorization.getPercentile(99);
+    }
+
+    @Override
+    public long getExecutionMean() {
+        return execution.getMean();
+    }
+
+    @Override
+    public long getExecutionP50() {
+        return execution.getPercentile(50);
+    }
+
+    @Override
+    public long getExecutionP99() {
+        return execution.getPercentile(99);
+    }
+
+    @Override
+    public long getExecutionMax() {
+        return execution.getMax();
+    }
+
+    @Override
+    public long getFlushP99() {
+        return flush.getPercentile(99);
+    }
+
+    /**
+     * Returns the latencies of the authorization of the requests
+     * @return the {@link LatencyHistogram} of the authorization stage
+     */
+    public LatencyHistogram getAuthorizationLatency() {
+        return authorization;
+    }
+
+    /**
+     * Returns the latencies of the execution of the function
+     * @return the {@link LatencyHistogram} of the execution stage
+     */
+    public LatencyHistogram getExecutionLatency() {
+        return execution;
+    }
+
+    /**
+     * Returns the latencies of the flush of the responses
+     * @return the {@link LatencyHistogram} of the flush stage
+     */
+    public LatencyHistogram getFlushLatency() {
+        return flush;
+    }
+
+    void recordAuthorization(long nanos, boolean authorized) {
+
+        authorization.record(nanos);
+
+        if (!authorized) {
+            unauthorized.increment();
+        }
+
+    }
+
+    void recordExecution(long nanos, boolean failed, boolean available) {
+
+        if (!available) {
+            notAvailable.increment();
+            return;
+        }
+
+        calls.increment();
+        execution.record(nanos);
+
+        if (failed) {
+            errors.increment();
+        }
+
+    }
+
+    void recordThrottled() {
+        throttled.increment();
+    }
+
+    void recordFlush(long nanos) {
+        flush.record(nanos);
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+/**
+ * Management interface of the {@link FunctionMetrics} of a function. Latencies are in nanoseconds.
+ */
+public interface FunctionMetricsMXBean {
+
+    int getFunction();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getUnauthorized();
+
+    long getNotAvailable();
+
+    long getThrottled();
+
+    long getAuthorizationP99();
+
+    long getExecutionMean();
+
+    long getExecutionP50();
+
+    long getExecutionP99();
+
+    long getExecutionMax();
+
+    long getFlushP99();
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with a relative error below 1/16 over the whole range of long values.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split in {@link #SUB_BUCKETS} buckets of equal
+ * width. All the buckets are allocated upfront: recording a value only increments counters and never allocates.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of buckets in every power of two
+     */
+    public static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a latency
+     *
+     * @param nanos the latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+
+        long value = Math.max(0, nanos);
+
+        buckets.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+
+    }
+
+    /**
+     * Returns the number of latencies recorded
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean latency in nanoseconds or 0 if nothing was recorded
+     * @return the mean latency in nanoseconds
+     */
+    public long getMean() {
+
+        long n = count.sum();
+
+        return n > 0 ? sum.sum() / n : 0;
+    }
+
+    /**
+     * Returns the maximum latency recorded in nanoseconds
+     * @return the maximum latency recorded in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the latency below which the specified percentage of the values falls
+     *
+     * @param percentile the percentage, between 0 and 100
+     * @return the latency in nanoseconds or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+
+            seen += counts[i];
+
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Forget all the values recorded
+     */
+    public void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.reset();
+        sum.reset();
+        max.reset();
+
+    }
+
+    static int indexOf(long value) {
+
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+        return lower + (1L << shift) - 1;
+    }
+
+}
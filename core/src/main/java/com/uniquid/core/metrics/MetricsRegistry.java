@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the metrics of a provider: the {@link FunctionMetrics} of every function number and a set of named
+ * gauges sampled when they are read.
+ * <p>
+ * The metrics of a function are created the first time the function is seen; after that recording a value
+ * doesn't allocate. The registry can be read with the methods of this class or exported as JMX MBeans with
+ * {@link #registerMBeans(String)}.
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class.getName());
+
+    /**
+     * Function numbers from 0 to MAX_FUNCTIONS - 1 are tracked
+     */
+    public static final int MAX_FUNCTIONS = 256;
+
+    private final AtomicReferenceArray<FunctionMetrics> functions = new AtomicReferenceArray<>(MAX_FUNCTIONS);
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private String domain;
+
+    /**
+     * Record the time spent authorizing a request
+     *
+     * @param function the requested function number
+     * @param nanos the duration in nanoseconds
+     * @param authorized true if the request was authorized
+     */
+    public void recordAuthorization(int function, long nanos, boolean authorized) {
+
+        FunctionMetrics metrics = getFunctionMetrics(function);
+
+        if (metrics != null) {
+            metrics.recordAuthorization(nanos, authorized);
+        }
+
+    }
+
+    /**
+     * Record the execution of a request
+     *
+     * @param function the requested function number
+     * @param nanos the duration in nanoseconds
+     * @param error the error code of the response
+     */
+    public void recordExecution(int function, long nanos, int error) {
+
+        FunctionMetrics metrics = getFunctionMetrics(function);
+
+        if (metrics != null) {
+            metrics.recordExecution(nanos,
+                    error != FunctionResponseMessage.RESULT_OK && error != ResponseCodes.RESULT_PARTIAL,
+                    error != FunctionResponseMessage.RESULT_FUNCTION_NOT_AVAILABLE);
+        }
+
+    }
+
+    /**
+     * Record a request refused by the rate limiter
+     *
+     * @param function the requested function number
+     */
+    public void recordThrottled(int function) {
+
+        FunctionMetrics metrics = getFunctionMetrics(function);
+
+        if (metrics != null) {
+            metrics.recordThrottled();
+        }
+
+    }
+
+    /**
+     * Record the time spent sending a response
+     *
+     * @param function the requested function number
+     * @param nanos the duration in nanoseconds
+     */
+    public void recordFlush(int function, long nanos) {
+
+        FunctionMetrics metrics = getFunctionMetrics(function);
+
+        if (metrics != null) {
+            metrics.recordFlush(nanos);
+        }
+
+    }
+
+    /**
+     * Returns the metrics of a function, creating them if needed
+     *
+     * @param function the function number
+     * @return the {@link FunctionMetrics} of the function or null if the number is out of range
+     */
+    public FunctionMetrics getFunctionMetrics(int function) {
+
+        if (function < 0 || function >= MAX_FUNCTIONS) {
+            return null;
+        }
+
+        FunctionMetrics metrics = functions.get(function);
+
+        if (metrics != null) {
+            return metrics;
+        }
+
+        metrics = new FunctionMetrics(function);
+
+        if (!functions.compareAndSet(function, null, metrics)) {
+            return functions.get(function);
+        }
+
+        registerFunctionMBean(metrics);
+
+        return metrics;
+    }
+
+    /**
+     * Returns the function numbers with metrics, in ascending order
+     */
+    @Override
+    public int[] getFunctionNumbers() {
+
+        List<Integer> numbers = new ArrayList<>();
+
+        for (int i = 0; i < MAX_FUNCTIONS; i++) {
+
+            if (functions.get(i) != null) {
+                numbers.add(i);
+            }
+
+        }
+
+        return numbers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Register a gauge, replacing the one with the same name
+     *
+     * @param name the name of the gauge
+     * @param gauge the supplier of the current value
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Remove a gauge
+     *
+     * @param name the name of the gauge
+     */
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * Returns the current value of a gauge
+     *
+     * @param name the name of the gauge
+     * @return the current value or null if the gauge doesn't exist
+     */
+    public Long getGauge(String name) {
+
+        LongSupplier gauge = gauges.get(name);
+
+        return gauge != null ? gauge.getAsLong() : null;
+    }
+
+    /**
+     * Returns the current value of all the gauges, sorted by name
+     */
+    @Override
+    public Map<String, Long> getGauges() {
+
+        Map<String, Long> values = new TreeMap<>();
+
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+
+        return values;
+    }
+
+    /**
+     * Export the registry and the metrics of every function in the platform MBean server, under the names
+     * domain:type=Registry and domain:type=Function,function=number
+     *
+     * @param domain the domain of the MBean names
+     * @throws JMException in case a problem occurs
+     */
+    public synchronized void registerMBeans(String domain) throws JMException {
+
+        if (this.domain != null) {
+            throw new IllegalStateException("MBeans already registered");
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        server.registerMBean(this, new ObjectName(domain + ":type=Registry"));
+
+        this.domain = domain;
+
+        for (int i = 0; i < MAX_FUNCTIONS; i++) {
+
+            FunctionMetrics metrics = functions.get(i);
+
+            if (metrics != null) {
+                registerFunctionMBean(metrics);
+            }
+
+        }
+
+    }
+
+    /**
+     * Remove the MBeans exported by {@link #registerMBeans(String)}
+     */
+    public synchronized void unregisterMBeans() {
+
+        if (domain == null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+
+            for (ObjectName name : server.queryNames(new ObjectName(domain + ":*"), null)) {
+                server.unregisterMBean(name);
+            }
+
+        } catch (JMException e) {
+            LOGGER.warn("Error while unregistering MBeans", e);
+        }
+
+        domain = null;
+
+    }
+
+    private synchronized void registerFunctionMBean(FunctionMetrics metrics) {
+
+        if (domain == null) {
+            return;
+        }
+
+        try {
+
+            ObjectName name = new ObjectName(domain + ":type=Function,function=" + metrics.getFunction());
+
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            }
+
+        } catch (JMException e) {
+            LOGGER.warn("Error while registering MBean of function {}", metrics.getFunction(), e);
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of a {@link MetricsRegistry}
+ */
+public interface MetricsRegistryMXBean {
+
+    Map<String, Long> getGauges();
+
+    int[] getFunctionNumbers();
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider;
+
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link Function} that executes without blocking the calling thread. The function container calls
+ * {@link #serviceAsync(FunctionRequestMessage, byte[])} and sends the response when the returned stage completes.
+ */
+public interface AsyncFunction extends Function {
+
+    /**
+     * Request to execute the function asynchronously
+     *
+     * @param inputMessage message coming from user
+     * @param payload payload from contract
+     * @return a {@link CompletionStage} that completes with the response, or exceptionally in case a problem occurs
+     */
+    CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload);
+
+}
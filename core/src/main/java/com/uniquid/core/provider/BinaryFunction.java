@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider;
+
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Function} that takes binary parameters and produces a binary result, without any textual encoding of
+ * its own. The parameters of the request and the result of the response travel base64 encoded, see
+ * {@link com.uniquid.core.provider.impl.BinaryPayload}: they are decoded once by
+ * {@link Function#service} and the function works directly on the bytes.
+ * {@link com.uniquid.core.provider.impl.GenericBinaryFunction} provides this implementation.
+ */
+public interface BinaryFunction extends Function {
+
+    /**
+     * Request to execute the function on binary parameters
+     *
+     * @param inputMessage message coming from user
+     * @param parameters the decoded parameters of the request
+     * @param payload payload from contract
+     * @return the result of the function or null for an empty result
+     * @throws FunctionException in case a problem occurs during executing the function
+     * @throws IOException in case a problem occurs
+     */
+    ByteBuffer serviceBinary(FunctionRequestMessage inputMessage, ByteBuffer parameters, byte[] payload)
+            throws FunctionException, IOException;
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider;
+
+/**
+ * A read-only {@link Function} whose result depends only on its parameters and on the contract payload (and
+ * optionally on the user). When a result cache is installed, the function container answers with the cached
+ * result of a previous execution with the same parameters and payload until its time to live elapses.
+ */
+public interface CacheableFunction extends Function {
+
+    /**
+     * Returns the time in milliseconds a result can be reused for
+     *
+     * @return the time to live of a result in milliseconds
+     */
+    long getCacheTtl();
+
+    /**
+     * Returns true if the result depends on the user that calls the function, so that results are cached per user
+     *
+     * @return true if the results are cached per user
+     */
+    boolean isCachedPerUser();
+
+}
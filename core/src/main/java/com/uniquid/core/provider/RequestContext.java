@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider;
+
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Request scoped information made available by the function container to the {@link Function} that is serving a
+ * request: the deadline after which the user is no longer waiting for the response, and the cancellation of the
+ * request.
+ * <p>
+ * The context is bound to the thread that calls {@link Function#service} or {@link AsyncFunction#serviceAsync} and
+ * can be retrieved with {@link #current()}. An asynchronous function must retrieve it before returning.
+ * Cancellation is cooperative: a long running function should check {@link #isCancelled()} and stop its work.
+ */
+public final class RequestContext {
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final FunctionRequestMessage request;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+    private volatile Consumer<FunctionResponseMessage> responseSink;
+
+    /**
+     * Creates a context for a request
+     *
+     * @param request the {@link FunctionRequestMessage} being served
+     * @param timeout the time the user waits for the response or 0 to wait forever
+     * @param unit the {@link TimeUnit} of the timeout
+     */
+    public RequestContext(FunctionRequestMessage request, long timeout, TimeUnit unit) {
+        this.request = request;
+        this.hasDeadline = timeout > 0;
+        this.deadline = hasDeadline ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    }
+
+    /**
+     * Returns the context of the request served by the current thread or null
+     * @return the context of the request served by the current thread or null
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a context to the current thread. Used by the function container.
+     *
+     * @param context the context to bind or null
+     * @return the context previously bound, to restore with {@link #restore(RequestContext)}
+     */
+    public static RequestContext attach(RequestContext context) {
+
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(context);
+
+        return previous;
+    }
+
+    /**
+     * Restore the context bound to the current thread before {@link #attach(RequestContext)}. Used by the
+     * function container.
+     *
+     * @param previous the context returned by {@link #attach(RequestContext)}
+     */
+    public static void restore(RequestContext previous) {
+
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+
+    }
+
+    /**
+     * Returns the request being served
+     * @return the {@link FunctionRequestMessage} being served
+     */
+    public FunctionRequestMessage getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns true if the request has a deadline
+     * @return true if the request has a deadline
+     */
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * Returns the time left before the deadline, 0 if it is passed or {@link Long#MAX_VALUE} if there is no deadline
+     *
+     * @param unit the {@link TimeUnit} of the result
+     * @return the time left before the deadline
+     */
+    public long getRemaining(TimeUnit unit) {
+
+        if (!hasDeadline) {
+            return Long.MAX_VALUE;
+        }
+
+        return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns true if the deadline is passed
+     * @return true if the deadline is passed
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Returns true if the request was cancelled or its deadline is passed: the response will not be sent
+     * @return true if the function should stop serving the request
+     */
+    public boolean isCancelled() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * Returns the consumer that sends intermediate responses to the user, or null if only the final response
+     * can be sent
+     * @return the consumer that sends intermediate responses or null
+     */
+    public Consumer<FunctionResponseMessage> getResponseSink() {
+        return responseSink;
+    }
+
+    /**
+     * Set the consumer that sends intermediate responses to the user. Used by the function container.
+     *
+     * @param responseSink the consumer that sends intermediate responses or null
+     */
+    public void setResponseSink(Consumer<FunctionResponseMessage> responseSink) {
+        this.responseSink = responseSink;
+    }
+
+    /**
+     * Cancel the request. Used by the function container.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider;
+
+import java.io.IOException;
+
+/**
+ * Incremental output of a {@link StreamingFunction}. The data written is sent to the user in sequenced chunks as
+ * soon as a chunk is full, so the whole result never needs to be held in memory.
+ */
+public interface ResponseStream {
+
+    /**
+     * Append data to the result
+     *
+     * @param data the data to append
+     * @throws IOException in case the data can't be sent
+     */
+    void write(String data) throws IOException;
+
+    /**
+     * Send the data written so far as a chunk, even if the chunk is not full
+     *
+     * @throws IOException in case the data can't be sent
+     */
+    void flush() throws IOException;
+
+}
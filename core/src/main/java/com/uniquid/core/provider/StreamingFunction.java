@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider;
+
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+
+import java.io.IOException;
+
+/**
+ * A {@link Function} that produces a large result incrementally. The function container calls
+ * {@link #serviceStreaming(FunctionRequestMessage, ResponseStream, byte[])} and sends the data written to the
+ * {@link ResponseStream} in chunks while the function is running.
+ */
+public interface StreamingFunction extends Function {
+
+    /**
+     * Request to execute the function writing the result to a stream
+     *
+     * @param inputMessage message coming from user
+     * @param outputStream the {@link ResponseStream} to write the result to
+     * @param payload payload from contract
+     * @throws FunctionException in case a problem occurs during executing the function
+     * @throws IOException in case a problem occurs
+     */
+    void serviceStreaming(FunctionRequestMessage inputMessage, ResponseStream outputStream, byte[] payload)
+            throws FunctionException, IOException;
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.provider.AsyncFunction;
+import com.uniquid.core.provider.Function;
+import com.uniquid.core.provider.FunctionConfig;
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Adapts a synchronous {@link Function} to the {@link AsyncFunction} interface. The function is executed on the
+ * calling thread and the returned stage is already completed.
+ */
+public class AsyncFunctionAdapter implements AsyncFunction {
+
+    private final Function function;
+
+    /**
+     * Creates an instance that wraps the specified {@link Function}
+     * @param function the {@link Function} to adapt
+     */
+    public AsyncFunctionAdapter(Function function) {
+        this.function = function;
+    }
+
+    /**
+     * Returns the {@link AsyncFunction} view of a {@link Function}
+     *
+     * @param function the {@link Function} to adapt
+     * @return the function itself if it is already an {@link AsyncFunction}, an adapter otherwise
+     */
+    public static AsyncFunction adapt(Function function) {
+
+        if (function instanceof AsyncFunction) {
+            return (AsyncFunction) function;
+        }
+
+        return new AsyncFunctionAdapter(function);
+    }
+
+    @Override
+    public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+
+        CompletableFuture<FunctionResponseMessage> future = new CompletableFuture<>();
+
+        try {
+
+            FunctionResponseMessage outputMessage = new FunctionResponseMessage();
+
+            function.service(inputMessage, outputMessage, payload);
+
+            future.complete(outputMessage);
+
+        } catch (Exception ex) {
+
+            future.completeExceptionally(ex);
+
+        }
+
+        return future;
+    }
+
+    @Override
+    public void init(FunctionConfig config) throws FunctionException {
+        function.init(config);
+    }
+
+    @Override
+    public void destroy() {
+        function.destroy();
+    }
+
+    @Override
+    public FunctionConfig getFunctionConfig() {
+        return function.getFunctionConfig();
+    }
+
+    @Override
+    public String getFunctionInfo() {
+        return function.getFunctionInfo();
+    }
+
+    @Override
+    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload)
+            throws FunctionException, IOException {
+        function.service(inputMessage, outputMessage, payload);
+    }
+
+    /**
+     * Returns the adapted {@link Function}
+     * @return the adapted {@link Function}
+     */
+    public Function getFunction() {
+        return function;
+    }
+
+}
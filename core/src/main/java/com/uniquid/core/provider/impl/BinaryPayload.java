@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.provider.BinaryFunction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encoding of the binary parameters and results exchanged with a {@link BinaryFunction}. The bytes are base64
+ * encoded in the string fields of the messages, a third larger than the raw data instead of the double of hex.
+ */
+public final class BinaryPayload {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private BinaryPayload() {
+        // Utility class
+    }
+
+    /**
+     * Decode the binary content of a message field
+     *
+     * @param data the base64 content of the field or null
+     * @return a read only {@link ByteBuffer} with the decoded bytes
+     * @throws IllegalArgumentException if the content is not valid base64
+     */
+    public static ByteBuffer decode(String data) {
+
+        if (data == null || data.isEmpty()) {
+            return EMPTY.asReadOnlyBuffer();
+        }
+
+        return ByteBuffer.wrap(Base64.getDecoder().decode(data)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Encode binary content in a message field. The position of the buffer is not modified.
+     *
+     * @param data the bytes between the position and the limit of the buffer, or null for an empty content
+     * @return the base64 content of the field
+     */
+    public static String encode(ByteBuffer data) {
+
+        if (data == null || !data.hasRemaining()) {
+            return "";
+        }
+
+        ByteBuffer encoded = Base64.getEncoder().encode(data.duplicate());
+
+        return new String(encoded.array(), encoded.arrayOffset(), encoded.remaining(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encode binary content in a message field
+     *
+     * @param data the bytes to encode
+     * @return the base64 content of the field
+     */
+    public static String encode(byte[] data) {
+        return encode(ByteBuffer.wrap(data));
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.core.provider.ResponseStream;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link ResponseStream} that cuts the result in chunks of at most chunkSize characters and hands every chunk to a
+ * sink as soon as it is full.
+ * <p>
+ * Every chunk is a {@link FunctionResponseMessage} whose result is a JSON object
+ * {"seq": number, "last": boolean, "encoding": "plain" or "gzip", "data": string}: the chunks before the last one
+ * have the {@link ResponseCodes#RESULT_PARTIAL} error code, the last one {@link FunctionResponseMessage#RESULT_OK}.
+ * Large chunks are gzipped and base64 encoded when this makes them smaller.
+ * <p>
+ * A result that fits in a single chunk, or a stream without sink, produces a plain response with the whole result.
+ */
+public class ChunkedResponseStream implements ResponseStream {
+
+    /**
+     * Chunks shorter than this are never compressed
+     */
+    public static final int COMPRESSION_THRESHOLD = 512;
+
+    private final Consumer<FunctionResponseMessage> sink;
+    private final int chunkSize;
+    private final StringBuilder buffer = new StringBuilder();
+
+    private int sequence;
+
+    /**
+     * Creates an instance with the specified configuration
+     *
+     * @param sink the consumer that sends the chunks or null to produce a single response
+     * @param chunkSize the maximum number of characters of a chunk
+     */
+    public ChunkedResponseStream(Consumer<FunctionResponseMessage> sink, int chunkSize) {
+        this.sink = sink;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    public void write(String data) throws IOException {
+
+        buffer.append(data);
+
+        if (sink == null) {
+            return;
+        }
+
+        while (buffer.length() >= chunkSize) {
+
+            sink.accept(createChunk(buffer.substring(0, chunkSize), false));
+            buffer.delete(0, chunkSize);
+
+        }
+
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        if (sink != null && buffer.length() > 0) {
+
+            sink.accept(createChunk(buffer.toString(), false));
+            buffer.setLength(0);
+
+        }
+
+    }
+
+    /**
+     * Close the stream
+     *
+     * @return the last response to send
+     * @throws IOException in case the data can't be encoded
+     */
+    public FunctionResponseMessage finish() throws IOException {
+
+        if (sequence == 0) {
+
+            // Nothing was sent: the result fits in a plain response
+            FunctionResponseMessage response = new FunctionResponseMessage();
+            response.setResult(buffer.toString());
+            response.setError(FunctionResponseMessage.RESULT_OK);
+            buffer.setLength(0);
+
+            return response;
+
+        }
+
+        FunctionResponseMessage last = createChunk(buffer.toString(), true);
+        buffer.setLength(0);
+
+        return last;
+    }
+
+    /**
+     * Returns the number of chunks produced
+     * @return the number of chunks produced
+     */
+    public int getChunkCount() {
+        return sequence;
+    }
+
+    private FunctionResponseMessage createChunk(String data, boolean last) throws IOException {
+
+        JSONObject chunk = new JSONObject();
+        chunk.put("seq", sequence++);
+        chunk.put("last", last);
+
+        String compressed = data.length() >= COMPRESSION_THRESHOLD ? compress(data) : null;
+
+        if (compressed != null && compressed.length() < data.length()) {
+            chunk.put("encoding", "gzip");
+            chunk.put("data", compressed);
+        } else {
+            chunk.put("encoding", "plain");
+            chunk.put("data", data);
+        }
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setResult(chunk.toString());
+        response.setError(last ? FunctionResponseMessage.RESULT_OK : ResponseCodes.RESULT_PARTIAL);
+
+        return response;
+    }
+
+    private static String compress(String data) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length() / 2);
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+}
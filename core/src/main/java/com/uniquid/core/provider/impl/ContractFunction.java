@@ -9,6 +9,7 @@ package com.uniquid.core.provider.impl;
 
 import com.uniquid.core.Core;
 import com.uniquid.core.provider.Function;
+import com.uniquid.core.provider.RequestContext;
 import com.uniquid.core.provider.exception.FunctionException;
 import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
@@ -17,6 +18,7 @@ import org.bitcoinj.core.Transaction;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
@@ -26,44 +28,131 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * {@link Function} designed to manage Contract signing from Orchestrator 
+ * {@link Function} designed to manage Contract signing from Orchestrator
+ * <p>
+ * The parameters are a JSON object {"tx": serialized transaction, "paths": [path, ...]} and the result is
+ * "0 - " followed by the signed transaction or "-1 - " followed by the error.
+ * <p>
+ * In batch mode the parameters are a JSON array of such objects, of at most {@link #MAX_BATCH_SIZE} entries, and the
+ * result is a JSON array with the result of every transaction, in the same order. The array is parsed one
+ * transaction at a time and a failure only affects its own entry.
  */
 public class ContractFunction extends GenericFunction {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ContractFunction.class);
 
+    /**
+     * The maximum number of transactions signed by a batch request
+     */
+    public static final int MAX_BATCH_SIZE = 256;
+
     @Override
     public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload)
             throws FunctionException, IOException {
 
         String params = inputMessage.getParameters();
-        String serializedTx;
-
-        List<String> path = new ArrayList<>();
 
         LOGGER.trace("Received input {}", inputMessage);
 
         try {
 
-            JSONObject jsonMessage = new JSONObject(params);
+            JSONTokener tokener = new JSONTokener(params);
 
-            serializedTx = jsonMessage.getString("tx");
+            if (tokener.nextClean() == '[') {
 
-            JSONArray paths = jsonMessage.getJSONArray("paths");
+                outputMessage.setResult(serviceBatch(tokener));
 
-            for (int i = 0; i < paths.length(); i++) {
-
-                path.add(paths.getString(i));
+                return;
 
             }
 
+            tokener.back();
+
+            JSONObject jsonMessage = (JSONObject) tokener.nextValue();
+
+            String serializedTx = jsonMessage.getString("tx");
 
-        } catch (JSONException ex) {
+            List<String> path = getPath(jsonMessage);
+
+            outputMessage.setResult(sign(serializedTx, path));
+
+        } catch (JSONException | ClassCastException ex) {
 
             throw new FunctionException("Problem with input JSON", ex);
 
         }
 
+    }
+
+    /*
+     * Sign every transaction of the array read from the tokener, positioned after the opening bracket
+     */
+    private String serviceBatch(JSONTokener tokener) throws FunctionException {
+
+        JSONArray results = new JSONArray();
+
+        RequestContext context = RequestContext.current();
+
+        char next = tokener.nextClean();
+
+        while (next != ']') {
+
+            if (results.length() == MAX_BATCH_SIZE) {
+                throw new FunctionException("Too many transactions in batch");
+            }
+
+            if (context != null && context.isCancelled()) {
+                throw new FunctionException("Request cancelled");
+            }
+
+            tokener.back();
+
+            Object item = tokener.nextValue();
+
+            try {
+
+                JSONObject jsonMessage = (JSONObject) item;
+
+                results.put(sign(jsonMessage.getString("tx"), getPath(jsonMessage)));
+
+            } catch (JSONException | ClassCastException ex) {
+
+                results.put("-1 - Problem with input JSON");
+
+            }
+
+            next = tokener.nextClean();
+
+            if (next == ',') {
+                next = tokener.nextClean();
+            } else if (next != ']') {
+                throw tokener.syntaxError("Expected a ',' or ']'");
+            }
+
+        }
+
+        LOGGER.info("Signed batch of {} transactions", results.length());
+
+        return results.toString();
+    }
+
+    private static List<String> getPath(JSONObject jsonMessage) {
+
+        List<String> path = new ArrayList<>();
+
+        JSONArray paths = jsonMessage.getJSONArray("paths");
+
+        for (int i = 0; i < paths.length(); i++) {
+
+            path.add(paths.getString(i));
+
+        }
+
+        return path;
+    }
+
+    private String sign(String serializedTx, List<String> path) {
+
         try {
 
             LOGGER.info("Signing on path {}", path);
@@ -74,13 +163,11 @@ public class ContractFunction extends GenericFunction {
 
             Transaction signedTx = spvNode.signTransaction(tx, path);
 
-            serializedTx = Hex.toHexString(signedTx.bitcoinSerialize());
-
-            outputMessage.setResult("0 - " + serializedTx);
+            return "0 - " + Hex.toHexString(signedTx.bitcoinSerialize());
 
         } catch (Exception ex) {
 
-            outputMessage.setResult("-1 - " + ex.getMessage());
+            return "-1 - " + ex.getMessage();
 
         }
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.provider.AsyncFunction;
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Defines a generic, protocol-independent asynchronous function.
+ * Designed to be subclassed by real {@link AsyncFunction} implementation
+ */
+public abstract class GenericAsyncFunction extends GenericFunction implements AsyncFunction {
+
+    @Override
+    public abstract CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload);
+
+    /**
+     * Synchronous execution, for callers that are not aware of {@link AsyncFunction}: blocks until the
+     * asynchronous execution completes.
+     */
+    @Override
+    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload)
+            throws FunctionException, IOException {
+
+        try {
+
+            FunctionResponseMessage response = serviceAsync(inputMessage, payload).toCompletableFuture().get();
+
+            outputMessage.setResult(response.getResult());
+
+        } catch (InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+            throw new FunctionException("Interrupted while executing function", ex);
+
+        } catch (ExecutionException ex) {
+
+            throw new FunctionException("Error while executing function", ex.getCause());
+
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.provider.BinaryFunction;
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Defines a generic, protocol-independent binary function.
+ * Designed to be subclassed by real {@link BinaryFunction} implementation
+ */
+public abstract class GenericBinaryFunction extends GenericFunction implements BinaryFunction {
+
+    @Override
+    public abstract ByteBuffer serviceBinary(FunctionRequestMessage inputMessage, ByteBuffer parameters, byte[] payload)
+            throws FunctionException, IOException;
+
+    /**
+     * Decodes the parameters of the request, executes the function and encodes its result in the output message
+     */
+    @Override
+    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload)
+            throws FunctionException, IOException {
+
+        ByteBuffer parameters;
+
+        try {
+
+            parameters = BinaryPayload.decode(inputMessage.getParameters());
+
+        } catch (IllegalArgumentException ex) {
+
+            throw new FunctionException("Invalid binary parameters", ex);
+
+        }
+
+        outputMessage.setResult(BinaryPayload.encode(serviceBinary(inputMessage, parameters, payload)));
+
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.provider.ResponseStream;
+import com.uniquid.core.provider.StreamingFunction;
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.io.IOException;
+
+/**
+ * Defines a generic, protocol-independent streaming function.
+ * Designed to be subclassed by real {@link StreamingFunction} implementation
+ */
+public abstract class GenericStreamingFunction extends GenericFunction implements StreamingFunction {
+
+    @Override
+    public abstract void serviceStreaming(FunctionRequestMessage inputMessage, ResponseStream outputStream, byte[] payload)
+            throws FunctionException, IOException;
+
+    /**
+     * Synchronous execution, for callers that are not aware of {@link StreamingFunction}: the whole result is
+     * collected in the output message.
+     */
+    @Override
+    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload)
+            throws FunctionException, IOException {
+
+        ChunkedResponseStream stream = new ChunkedResponseStream(null, Integer.MAX_VALUE);
+
+        serviceStreaming(inputMessage, stream, payload);
+
+        outputMessage.setResult(stream.finish().getResult());
+
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.provider.impl;
+
+import com.uniquid.core.provider.AsyncFunction;
+import com.uniquid.core.provider.FunctionConfig;
+import com.uniquid.core.provider.StreamingFunction;
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * Adapts a {@link StreamingFunction} to the {@link AsyncFunction} interface for one request. The function is
+ * executed on the calling thread: the chunks are handed to the sink while it runs and the returned stage
+ * completes with the last chunk.
+ */
+public class StreamingFunctionAdapter implements AsyncFunction {
+
+    private final StreamingFunction function;
+    private final Consumer<FunctionResponseMessage> sink;
+    private final int chunkSize;
+
+    /**
+     * Creates an instance that wraps the specified {@link StreamingFunction}
+     *
+     * @param function the {@link StreamingFunction} to adapt
+     * @param sink the consumer that sends the chunks or null to produce a single response
+     * @param chunkSize the maximum number of characters of a chunk
+     */
+    public StreamingFunctionAdapter(StreamingFunction function, Consumer<FunctionResponseMessage> sink, int chunkSize) {
+        this.function = function;
+        this.sink = sink;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+
+        CompletableFuture<FunctionResponseMessage> future = new CompletableFuture<>();
+
+        try {
+
+            ChunkedResponseStream stream = new ChunkedResponseStream(sink, chunkSize);
+
+            function.serviceStreaming(inputMessage, stream, payload);
+
+            future.complete(stream.finish());
+
+        } catch (Exception ex) {
+
+            future.completeExceptionally(ex);
+
+        }
+
+        return future;
+    }
+
+    @Override
+    public void init(FunctionConfig config) throws FunctionException {
+        function.init(config);
+    }
+
+    @Override
+    public void destroy() {
+        function.destroy();
+    }
+
+    @Override
+    public FunctionConfig getFunctionConfig() {
+        return function.getFunctionConfig();
+    }
+
+    @Override
+    public String getFunctionInfo() {
+        return function.getFunctionInfo();
+    }
+
+    @Override
+    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload)
+            throws FunctionException, IOException {
+        function.service(inputMessage, outputMessage, payload);
+    }
+
+}
@@ -7,13 +7,28 @@
 
 package com.uniquid.core;
 
+import com.uniquid.core.cache.BoundedCache;
+import com.uniquid.core.cache.IdempotencyStore;
+import com.uniquid.core.cache.RequestCoalescer;
+import com.uniquid.core.cache.ResultCache;
+import com.uniquid.core.interceptor.ProviderExchange;
+import com.uniquid.core.interceptor.RequestInterceptor;
+import com.uniquid.core.metrics.FunctionMetrics;
+import com.uniquid.core.metrics.MetricsRegistry;
+import com.uniquid.core.impl.Bulkhead;
+import com.uniquid.core.impl.RateLimiter;
 import com.uniquid.core.impl.test.DummyNode;
 import com.uniquid.core.impl.test.DummyProviderRegister;
 import com.uniquid.core.impl.test.DummyUserRegister;
+import com.uniquid.core.provider.CacheableFunction;
 import com.uniquid.core.provider.Function;
+import com.uniquid.core.provider.RequestContext;
 import com.uniquid.core.provider.exception.FunctionException;
 import com.uniquid.core.provider.impl.EchoFunction;
+import com.uniquid.core.provider.impl.GenericAsyncFunction;
 import com.uniquid.core.provider.impl.GenericFunction;
+import com.uniquid.core.provider.impl.GenericStreamingFunction;
+import com.uniquid.core.provider.ResponseStream;
 import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
 import com.uniquid.node.UniquidNode;
@@ -28,7 +43,13 @@ import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CoreTest {
 
@@ -606,4 +627,934 @@ public class CoreTest {
 
     }
 
+    @Test
+    public void testPerformProviderRequestAsyncFunction() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final CompletableFuture<FunctionResponseMessage> pending = new CompletableFuture<>();
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericAsyncFunction() {
+
+                    @Override
+                    public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+                        return pending;
+                    }
+                };
+            }
+        };
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        CompletableFuture<FunctionResponseMessage> future = core.performProviderRequestAsync(providerRequest, null)
+                .toCompletableFuture();
+
+        Assert.assertFalse(future.isDone());
+
+        FunctionResponseMessage functionResponse = new FunctionResponseMessage();
+        functionResponse.setResult("async");
+
+        pending.complete(functionResponse);
+
+        FunctionResponseMessage providerResponse = future.get();
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, providerResponse.getError());
+        Assert.assertEquals("async", providerResponse.getResult());
+        Assert.assertEquals(providerChannel.getProviderAddress(), providerResponse.getProvider());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestAsyncAdapter() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new EchoFunction();
+            }
+        };
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(31);
+        providerRequest.setParameters("params");
+
+        CompletableFuture<FunctionResponseMessage> future = core.performProviderRequestAsync(providerRequest, null)
+                .toCompletableFuture();
+
+        Assert.assertTrue(future.isDone());
+
+        FunctionResponseMessage providerResponse = future.get();
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, providerResponse.getError());
+        Assert.assertEquals("UID_echo: params", providerResponse.getResult());
+        Assert.assertEquals(providerChannel.getProviderAddress(), providerResponse.getProvider());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestAsyncException() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericAsyncFunction() {
+
+                    @Override
+                    public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+                        CompletableFuture<FunctionResponseMessage> future = new CompletableFuture<>();
+                        future.completeExceptionally(new FunctionException("Error!"));
+                        return future;
+                    }
+                };
+            }
+        };
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        FunctionResponseMessage providerResponse = core.performProviderRequestAsync(providerRequest, null)
+                .toCompletableFuture().get();
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_ERROR, providerResponse.getError());
+        Assert.assertEquals("Error while executing function: Error!", providerResponse.getResult());
+
+        // The synchronous path blocks on the asynchronous execution
+        providerResponse = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_ERROR, providerResponse.getError());
+        Assert.assertEquals(providerChannel.getProviderAddress(), providerResponse.getProvider());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestDuplicate() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericFunction() {
+
+                    @Override
+                    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+                        outputMessage.setResult("execution " + executions.incrementAndGet());
+                    }
+                };
+            }
+        };
+
+        core.setIdempotencyStore(new IdempotencyStore(16, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.FIFO));
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setId(1234);
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        FunctionResponseMessage first = core.performProviderRequest(providerRequest, null);
+        FunctionResponseMessage second = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals(1, executions.get());
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("execution 1", second.getResult());
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, second.getError());
+        Assert.assertEquals(providerChannel.getProviderAddress(), second.getProvider());
+
+        Assert.assertEquals(1, core.getIdempotencyStore().getHitCount());
+        Assert.assertEquals(1, core.getIdempotencyStore().getMissCount());
+
+        // A different request id is executed again
+        providerRequest.setId(1235);
+
+        Assert.assertEquals("execution 2", core.performProviderRequest(providerRequest, null).getResult());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestThrottled() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericFunction() {
+
+                    @Override
+                    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+                        outputMessage.setResult("execution " + executions.incrementAndGet());
+                    }
+                };
+            }
+        };
+
+        core.setRateLimiter(new RateLimiter(new RateLimiter.Limit(0.001, 1), 16));
+        core.setMetricsRegistry(new MetricsRegistry());
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setId(1234);
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK,
+                core.performProviderRequest(providerRequest, null).getError());
+        Assert.assertEquals(ResponseCodes.RESULT_THROTTLED,
+                core.performProviderRequest(providerRequest, null).getError());
+
+        Assert.assertEquals(1, executions.get());
+
+        // The throttled request is visible in the metrics of the function
+        FunctionMetrics metrics = core.getMetricsRegistry().getFunctionMetrics(33);
+
+        Assert.assertEquals(1, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getThrottled());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestInterceptors() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericFunction() {
+
+                    @Override
+                    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+                        outputMessage.setResult("result");
+                    }
+                };
+            }
+        };
+
+        final List<String> calls = new ArrayList<>();
+        final List<Long> executions = new ArrayList<>();
+
+        core.addInterceptor((exchange, chain) -> {
+
+            calls.add("first");
+
+            return chain.proceed(exchange).thenApply(response -> {
+
+                executions.add(exchange.getStageNanos(ProviderExchange.Stage.EXECUTION));
+                response.setResult(response.getResult() + " intercepted");
+
+                return response;
+            });
+        });
+
+        RequestInterceptor refuseUnknown = (exchange, chain) -> {
+
+            calls.add("second");
+
+            try {
+
+                if (exchange.getPermission() == null) {
+
+                    FunctionResponseMessage refused = new FunctionResponseMessage();
+                    refused.setError(FunctionResponseMessage.RESULT_NO_PERMISSION);
+                    refused.setResult("refused");
+
+                    return CompletableFuture.completedFuture(refused);
+
+                }
+
+            } catch (RegisterException ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            return chain.proceed(exchange);
+        };
+
+        core.addInterceptor(refuseUnknown);
+
+        Assert.assertEquals(2, core.getInterceptors().size());
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        FunctionResponseMessage providerResponse = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals(Arrays.asList("first", "second"), calls);
+        Assert.assertEquals("result intercepted", providerResponse.getResult());
+        Assert.assertEquals(1, executions.size());
+        Assert.assertTrue(executions.get(0) >= 0);
+
+        // The second interceptor answers without executing the function
+        providerRequest.setUser("unknownAddress");
+
+        providerResponse = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals("refused intercepted", providerResponse.getResult());
+        Assert.assertEquals(Long.valueOf(-1), executions.get(1));
+
+        Assert.assertTrue(core.removeInterceptor(refuseUnknown));
+
+        calls.clear();
+
+        core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals(Arrays.asList("first"), calls);
+
+    }
+
+    @Test
+    public void testPerformProviderRequestCached() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        abstract class TestCacheableFunction extends GenericFunction implements CacheableFunction {
+        }
+
+        final Function function = new TestCacheableFunction() {
+
+            @Override
+            public long getCacheTtl() {
+                return 60000;
+            }
+
+            @Override
+            public boolean isCachedPerUser() {
+                return false;
+            }
+
+            @Override
+            public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+                outputMessage.setResult("execution " + executions.incrementAndGet());
+            }
+        };
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return function;
+            }
+        };
+
+        core.setResultCache(new ResultCache(16, 1, TimeUnit.MINUTES));
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        Assert.assertEquals("execution 1", core.performProviderRequest(providerRequest, null).getResult());
+
+        FunctionResponseMessage providerResponse = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals("execution 1", providerResponse.getResult());
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, providerResponse.getError());
+        Assert.assertEquals(providerChannel.getProviderAddress(), providerResponse.getProvider());
+        Assert.assertEquals(1, executions.get());
+
+        providerRequest.setParameters("other");
+
+        Assert.assertEquals("execution 2", core.performProviderRequest(providerRequest, null).getResult());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestCoalesced() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final List<CompletableFuture<FunctionResponseMessage>> executions = new ArrayList<>();
+
+        abstract class TestCacheableFunction extends GenericAsyncFunction implements CacheableFunction {
+        }
+
+        final Function function = new TestCacheableFunction() {
+
+            @Override
+            public long getCacheTtl() {
+                return 0;
+            }
+
+            @Override
+            public boolean isCachedPerUser() {
+                return false;
+            }
+
+            @Override
+            public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+                CompletableFuture<FunctionResponseMessage> execution = new CompletableFuture<>();
+                executions.add(execution);
+                return execution;
+            }
+        };
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return function;
+            }
+        };
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        core.setRequestCoalescer(coalescer);
+
+        List<CompletableFuture<FunctionResponseMessage>> futures = new ArrayList<>();
+
+        for (String user : Arrays.asList("userAddress", "user2", "user3")) {
+
+            FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+            providerRequest.setUser(user);
+            providerRequest.setFunction(33);
+            providerRequest.setParameters("params");
+
+            futures.add(core.performProviderRequestAsync(providerRequest, new byte[] { 0, 1 }).toCompletableFuture());
+
+        }
+
+        // Different permissions: executed separately
+        FunctionRequestMessage otherRequest = new FunctionRequestMessage();
+        otherRequest.setUser("user4");
+        otherRequest.setFunction(33);
+        otherRequest.setParameters("params");
+
+        futures.add(core.performProviderRequestAsync(otherRequest, new byte[] { 0, 2 }).toCompletableFuture());
+
+        Assert.assertEquals(2, executions.size());
+        Assert.assertEquals(2, coalescer.size());
+        Assert.assertEquals(2, coalescer.getCoalescedCount());
+
+        FunctionResponseMessage functionResponse = new FunctionResponseMessage();
+        functionResponse.setResult("shared");
+
+        executions.get(0).complete(functionResponse);
+
+        FunctionResponseMessage first = futures.get(0).get();
+        FunctionResponseMessage second = futures.get(1).get();
+
+        Assert.assertEquals("shared", first.getResult());
+        Assert.assertEquals("shared", second.getResult());
+        Assert.assertEquals("shared", futures.get(2).get().getResult());
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, second.getError());
+        Assert.assertNotSame(first, second);
+        Assert.assertFalse(futures.get(3).isDone());
+        Assert.assertEquals(1, coalescer.size());
+
+        executions.get(1).complete(new FunctionResponseMessage());
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, futures.get(3).get().getError());
+        Assert.assertEquals(0, coalescer.size());
+
+        // Completed executions are not shared
+        core.performProviderRequestAsync(otherRequest, new byte[] { 0, 2 });
+
+        Assert.assertEquals(3, executions.size());
+
+    }
+
+
+    @Test
+    public void testPerformProviderRequestCoalescedDeadline() throws Exception {
+
+        final List<CompletableFuture<FunctionResponseMessage>> executions = new ArrayList<>();
+        final List<RequestContext> contexts = new ArrayList<>();
+
+        abstract class TestCacheableFunction extends GenericAsyncFunction implements CacheableFunction {
+        }
+
+        final Function function = new TestCacheableFunction() {
+
+            @Override
+            public long getCacheTtl() {
+                return 0;
+            }
+
+            @Override
+            public boolean isCachedPerUser() {
+                return false;
+            }
+
+            @Override
+            public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+                CompletableFuture<FunctionResponseMessage> execution = new CompletableFuture<>();
+                executions.add(execution);
+                contexts.add(RequestContext.current());
+                return execution;
+            }
+        };
+
+        Core core = new Core(createRegisterFactory(new DummyProviderRegister()), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return function;
+            }
+
+            @Override
+            protected long getRequestTimeout(FunctionRequestMessage providerRequest) {
+                return "patient".equals(providerRequest.getUser()) ? 5000 : 50;
+            }
+        };
+
+        core.setRequestCoalescer(new RequestCoalescer());
+
+        List<CompletableFuture<FunctionResponseMessage>> futures = new ArrayList<>();
+
+        // The first request has the shortest deadline
+        for (String user : Arrays.asList("hasty", "patient")) {
+
+            FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+            providerRequest.setUser(user);
+            providerRequest.setFunction(33);
+            providerRequest.setParameters("params");
+
+            futures.add(core.performProviderRequestAsync(providerRequest, null).toCompletableFuture());
+
+        }
+
+        Assert.assertEquals(1, executions.size());
+
+        Assert.assertEquals(ResponseCodes.RESULT_TIMEOUT, futures.get(0).get(5, TimeUnit.SECONDS).getError());
+
+        // The request still waiting keeps the execution alive
+        Assert.assertFalse(contexts.get(0).isCancelled());
+
+        FunctionResponseMessage functionResponse = new FunctionResponseMessage();
+        functionResponse.setResult("shared");
+
+        executions.get(0).complete(functionResponse);
+
+        FunctionResponseMessage response = futures.get(1).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, response.getError());
+        Assert.assertEquals("shared", response.getResult());
+
+        // Cancelled once every request sharing it is cancelled
+        futures.clear();
+
+        for (String user : Arrays.asList("hasty", "hasty too")) {
+
+            FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+            providerRequest.setUser(user);
+            providerRequest.setFunction(33);
+            providerRequest.setParameters("params");
+
+            futures.add(core.performProviderRequestAsync(providerRequest, null).toCompletableFuture());
+
+        }
+
+        Assert.assertEquals(2, executions.size());
+        Assert.assertEquals(ResponseCodes.RESULT_TIMEOUT, futures.get(0).get(5, TimeUnit.SECONDS).getError());
+        Assert.assertEquals(ResponseCodes.RESULT_TIMEOUT, futures.get(1).get(5, TimeUnit.SECONDS).getError());
+        Assert.assertTrue(contexts.get(1).isCancelled());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestCoalescedBusy() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        abstract class TestCacheableFunction extends GenericAsyncFunction implements CacheableFunction {
+        }
+
+        final Function function = new TestCacheableFunction() {
+
+            @Override
+            public long getCacheTtl() {
+                return 0;
+            }
+
+            @Override
+            public boolean isCachedPerUser() {
+                return false;
+            }
+
+            @Override
+            public CompletionStage<FunctionResponseMessage> serviceAsync(FunctionRequestMessage inputMessage, byte[] payload) {
+                FunctionResponseMessage response = new FunctionResponseMessage();
+                response.setResult("execution " + executions.incrementAndGet());
+                return CompletableFuture.completedFuture(response);
+            }
+        };
+
+        final Bulkhead full = new Bulkhead("full", 1, 0, Bulkhead.RejectionPolicy.REJECT);
+        full.shutdown();
+
+        final FunctionRequestMessage joiningRequest = new FunctionRequestMessage();
+        joiningRequest.setUser("joining");
+        joiningRequest.setFunction(33);
+        joiningRequest.setParameters("params");
+
+        final List<CompletableFuture<FunctionResponseMessage>> joining = new ArrayList<>();
+
+        final Core core = new Core(createRegisterFactory(new DummyProviderRegister()), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return function;
+            }
+
+            @Override
+            protected Bulkhead getBulkhead(FunctionRequestMessage providerRequest) {
+
+                if (providerRequest == joiningRequest) {
+                    return null;
+                }
+
+                // An identical request joins the execution before the bulkhead refuses it
+                joining.add(performProviderRequestAsync(joiningRequest, null).toCompletableFuture());
+
+                return full;
+            }
+        };
+
+        RequestCoalescer coalescer = new RequestCoalescer();
+        core.setRequestCoalescer(coalescer);
+
+        FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("refused");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        FunctionResponseMessage refused = core.performProviderRequestAsync(providerRequest, null).toCompletableFuture()
+                .get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(ResponseCodes.RESULT_BUSY, refused.getError());
+        Assert.assertEquals(1, coalescer.getCoalescedCount());
+
+        // The request that joined executes the function itself
+        FunctionResponseMessage response = joining.get(0).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, response.getError());
+        Assert.assertEquals("execution 1", response.getResult());
+        Assert.assertEquals(0, coalescer.size());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestTimeout() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final AtomicInteger iterations = new AtomicInteger();
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericFunction() {
+
+                    @Override
+                    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+
+                        RequestContext context = RequestContext.current();
+
+                        // Cooperative cancellation
+                        while (!context.isCancelled() && iterations.incrementAndGet() < 1000) {
+                            try {
+                                Thread.sleep(10);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+
+                        outputMessage.setResult("late");
+                    }
+                };
+            }
+        };
+
+        core.setDefaultTimeout(50, TimeUnit.MILLISECONDS);
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        FunctionResponseMessage providerResponse = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals(ResponseCodes.RESULT_TIMEOUT, providerResponse.getError());
+        Assert.assertEquals("Function timed out", providerResponse.getResult());
+        Assert.assertEquals(providerChannel.getProviderAddress(), providerResponse.getProvider());
+        Assert.assertTrue(iterations.get() < 1000);
+        Assert.assertNull(RequestContext.current());
+
+    }
+
+    @Test
+    public void testPerformProviderRequestExpired() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericFunction() {
+
+                    @Override
+                    public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+                        executions.incrementAndGet();
+                    }
+                };
+            }
+        };
+
+        core.setDefaultTimeout(1, TimeUnit.MILLISECONDS);
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        // The request waited in a queue longer than its deadline
+        RequestContext previous = RequestContext.attach(core.createRequestContext(providerRequest));
+
+        try {
+
+            Thread.sleep(20);
+
+            FunctionResponseMessage providerResponse = core.performProviderRequest(providerRequest, null);
+
+            Assert.assertEquals(ResponseCodes.RESULT_TIMEOUT, providerResponse.getError());
+            Assert.assertEquals(0, executions.get());
+
+        } finally {
+            RequestContext.restore(previous);
+        }
+
+    }
+
+    @Test
+    public void testPerformProviderRequestStreaming() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericStreamingFunction() {
+
+                    @Override
+                    public void serviceStreaming(FunctionRequestMessage inputMessage, ResponseStream outputStream, byte[] payload)
+                            throws IOException {
+
+                        for (int i = 0; i < 10; i++) {
+                            outputStream.write("line" + i + "\n");
+                        }
+
+                    }
+                };
+            }
+        };
+
+        core.setChunkSize(16);
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        // Without a sink the whole result is returned at once
+        FunctionResponseMessage providerResponse = core.performProviderRequest(providerRequest, null);
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, providerResponse.getError());
+        Assert.assertTrue(providerResponse.getResult().startsWith("line0\nline1\n"));
+
+        // With a sink the chunks are sent while the function runs
+        final List<FunctionResponseMessage> chunks = new ArrayList<>();
+
+        RequestContext context = core.createRequestContext(providerRequest);
+        context.setResponseSink(chunks::add);
+
+        RequestContext previous = RequestContext.attach(context);
+
+        try {
+
+            providerResponse = core.performProviderRequest(providerRequest, null);
+
+        } finally {
+            RequestContext.restore(previous);
+        }
+
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(ResponseCodes.RESULT_PARTIAL, chunks.get(0).getError());
+        Assert.assertEquals(providerChannel.getProviderAddress(), chunks.get(0).getProvider());
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, providerResponse.getError());
+        Assert.assertTrue(providerResponse.getResult().contains("\"last\":true"));
+
+    }
+
+    @Test
+    public void testPerformProviderRequestStreamingDuplicate() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+
+        dummyProvider.insertChannel(providerChannel);
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        Core core = new Core(createRegisterFactory(dummyProvider), new DummyNode()) {
+
+            @Override
+            protected Function getFunction(FunctionRequestMessage inputMessage) {
+                return new GenericStreamingFunction() {
+
+                    @Override
+                    public void serviceStreaming(FunctionRequestMessage inputMessage, ResponseStream outputStream, byte[] payload)
+                            throws IOException {
+
+                        executions.incrementAndGet();
+
+                        for (int i = 0; i < 10; i++) {
+                            outputStream.write("line" + i + "\n");
+                        }
+
+                    }
+                };
+            }
+        };
+
+        core.setChunkSize(16);
+        core.setIdempotencyStore(new IdempotencyStore(16, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.FIFO));
+
+        final FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setId(1234);
+        providerRequest.setUser("userAddress");
+        providerRequest.setFunction(33);
+        providerRequest.setParameters("params");
+
+        for (int i = 1; i <= 2; i++) {
+
+            final List<FunctionResponseMessage> chunks = new ArrayList<>();
+
+            RequestContext context = core.createRequestContext(providerRequest);
+            context.setResponseSink(chunks::add);
+
+            RequestContext previous = RequestContext.attach(context);
+
+            FunctionResponseMessage providerResponse;
+
+            try {
+
+                providerResponse = core.performProviderRequest(providerRequest, null);
+
+            } finally {
+                RequestContext.restore(previous);
+            }
+
+            // The duplicate receives the whole chunk sequence again, not only the last chunk
+            Assert.assertEquals(i, executions.get());
+            Assert.assertEquals(3, chunks.size());
+            Assert.assertEquals(ResponseCodes.RESULT_PARTIAL, chunks.get(0).getError());
+            Assert.assertTrue(providerResponse.getResult().contains("\"last\":true"));
+
+        }
+
+        Assert.assertEquals(0, core.getIdempotencyStore().size());
+
+    }
+
+    private static RegisterFactory createRegisterFactory(final ProviderRegister providerRegister) {
+
+        final UserRegister dummyUser = new DummyUserRegister();
+
+        return new RegisterFactory() {
+
+            @Override
+            public UserRegister getUserRegister() throws RegisterException {
+                return dummyUser;
+            }
+
+            @Override
+            public ProviderRegister getProviderRegister() throws RegisterException {
+                return providerRegister;
+            }
+
+            @Override
+            public TransactionManager getTransactionManager() throws RegisterException {
+                return null;
+            }
+
+        };
+
+    }
+
 }
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core;
+
+import com.uniquid.core.connector.InMemoryConnector;
+import com.uniquid.core.impl.UniquidSimplifier;
+import com.uniquid.core.impl.test.DummyNode;
+import com.uniquid.core.impl.test.DummyProviderRegister;
+import com.uniquid.core.impl.test.DummyUserRegister;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.messages.UniquidMessage;
+import com.uniquid.params.UniquidRegTest;
+import com.uniquid.register.RegisterFactory;
+import com.uniquid.register.exception.RegisterException;
+import com.uniquid.register.provider.ProviderRegister;
+import com.uniquid.register.transaction.TransactionManager;
+import com.uniquid.register.user.UserRegister;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ListenerTest {
+
+    @BeforeClass
+    public static void setUp() {
+        org.bitcoinj.core.Context.propagate(new org.bitcoinj.core.Context(UniquidRegTest.get()));
+    }
+
+    private static FunctionRequestMessage createRequest(long id, String user) {
+
+        FunctionRequestMessage request = new FunctionRequestMessage();
+        request.setId(id);
+        request.setUser(user);
+        request.setFunction(33);
+        request.setParameters(String.valueOf(id));
+
+        return request;
+    }
+
+    private static FunctionResponseMessage createResponse(FunctionRequestMessage request) {
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setError(FunctionResponseMessage.RESULT_OK);
+        response.setResult(request.getParameters());
+
+        return response;
+    }
+
+    private static UniquidSimplifier createSimplifier() throws Exception {
+
+        RegisterFactory dummyFactory = new RegisterFactory() {
+
+            @Override
+            public UserRegister getUserRegister() throws RegisterException {
+                return new DummyUserRegister();
+            }
+
+            @Override
+            public ProviderRegister getProviderRegister() throws RegisterException {
+                return new DummyProviderRegister();
+            }
+
+            @Override
+            public TransactionManager getTransactionManager() throws RegisterException {
+                return null;
+            }
+
+        };
+
+        return new UniquidSimplifier(dummyFactory, new DummyNode());
+    }
+
+    private static Thread start(Listener listener) {
+
+        Thread thread = new Thread(listener);
+        thread.start();
+
+        return thread;
+    }
+
+    private static void stop(Thread thread) throws InterruptedException {
+
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        Assert.assertFalse(thread.isAlive());
+
+    }
+
+    @Test
+    public void testPipelined() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+
+        // The first two requests complete only if they run at the same time
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+
+        Listener listener = new Listener.Builder()
+                .setHandler((simplifier, message) -> {
+
+                    FunctionRequestMessage request = (FunctionRequestMessage) message;
+
+                    if (request.getId() < 2) {
+                        try {
+                            barrier.await(5, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+
+                    return createResponse(request);
+                })
+                .setWorkerThreads(4)
+                .setQueueCapacity(8)
+                .setMaxFlushBatch(4)
+                .setConnectorSupplier(() -> connector)
+                .build();
+
+        Thread thread = start(listener);
+
+        try {
+
+            List<CompletableFuture<FunctionResponseMessage>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 200; i++) {
+                futures.add(connector.send(createRequest(i, "user" + (i % 7))));
+            }
+
+            // Every response is flushed to the endpoint of its own request
+            for (int i = 0; i < 200; i++) {
+                Assert.assertEquals(String.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS).getResult());
+            }
+
+        } finally {
+            stop(thread);
+        }
+
+        Assert.assertEquals(0, listener.getInFlightCount());
+
+    }
+
+    /*
+     * Records the order of the executions of every user. The executions are completed by another thread, that must
+     * never run the next request of the user.
+     */
+    private static final class OrderedHandler implements MessageHandler {
+
+        private final ScheduledExecutorService completer = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "completer"));
+
+        private final Map<String, List<Long>> executed = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        private final AtomicBoolean overlapped = new AtomicBoolean();
+        private final AtomicBoolean onCompleter = new AtomicBoolean();
+
+        @Override
+        public FunctionResponseMessage handleMessage(UniquidSimplifier simplifier, UniquidMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletionStage<FunctionResponseMessage> handleMessageAsync(UniquidSimplifier simplifier,
+                                                                          UniquidMessage message) {
+
+            final FunctionRequestMessage request = (FunctionRequestMessage) message;
+
+            if ("completer".equals(Thread.currentThread().getName())) {
+                onCompleter.set(true);
+            }
+
+            final AtomicInteger active = running.computeIfAbsent(request.getUser(), user -> new AtomicInteger());
+
+            if (active.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+
+            executed.computeIfAbsent(request.getUser(), user -> new CopyOnWriteArrayList<>()).add(request.getId());
+
+            CompletableFuture<FunctionResponseMessage> future = new CompletableFuture<>();
+
+            completer.schedule(() -> {
+                active.decrementAndGet();
+                future.complete(createResponse(request));
+            }, 5, TimeUnit.MILLISECONDS);
+
+            return future;
+        }
+
+        private void verify() {
+
+            completer.shutdown();
+
+            Assert.assertFalse(overlapped.get());
+            Assert.assertFalse(onCompleter.get());
+
+            for (List<Long> ids : executed.values()) {
+
+                for (int i = 1; i < ids.size(); i++) {
+                    Assert.assertTrue(ids.get(i - 1) < ids.get(i));
+                }
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+        final OrderedHandler handler = new OrderedHandler();
+
+        Listener listener = new Listener.Builder()
+                .setHandler(handler)
+                .setWorkerThreads(2)
+                .setQueueCapacity(64)
+                .setOrderedPerUser(100)
+                .setConnectorSupplier(() -> connector)
+                .build();
+
+        listener.setDrainTimeout(5, TimeUnit.SECONDS);
+
+        Thread thread = start(listener);
+
+        List<CompletableFuture<FunctionResponseMessage>> futures = new ArrayList<>();
+
+        try {
+
+            for (int i = 0; i < 60; i++) {
+                futures.add(connector.send(createRequest(i, "user" + (i % 3))));
+            }
+
+            for (int i = 0; i < 60; i++) {
+                Assert.assertEquals(String.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS).getResult());
+            }
+
+            // Requests still queued for the user when the listener stops
+            futures.clear();
+
+            for (int i = 60; i < 90; i++) {
+                futures.add(connector.send(createRequest(i, "user0")));
+            }
+
+            while (connector.getPendingCount() > 0) {
+                Thread.sleep(1);
+            }
+
+        } finally {
+            stop(thread);
+        }
+
+        // Drained before the workers stopped
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals(String.valueOf(60 + i), futures.get(i).get(0, TimeUnit.SECONDS).getResult());
+        }
+
+        Assert.assertEquals(0, listener.getInFlightCount());
+
+        handler.verify();
+
+    }
+
+    @Test
+    public void testOrderedWorkersBusy() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+        final OrderedHandler handler = new OrderedHandler();
+
+        // The next request of a user often finds the queue of the workers full
+        Listener listener = new Listener.Builder()
+                .setHandler(handler)
+                .setWorkerThreads(1)
+                .setQueueCapacity(1)
+                .setOrderedPerUser(100)
+                .setConnectorSupplier(() -> connector)
+                .build();
+
+        Thread thread = start(listener);
+
+        List<CompletableFuture<FunctionResponseMessage>> futures = new ArrayList<>();
+
+        try {
+
+            for (int i = 0; i < 200; i++) {
+                futures.add(connector.send(createRequest(i, "user" + (i % 20))));
+            }
+
+            // Every request is answered: executed or refused, never stranded
+            for (int i = 0; i < 200; i++) {
+
+                FunctionResponseMessage response = futures.get(i).get(5, TimeUnit.SECONDS);
+
+                if (response.getError() == FunctionResponseMessage.RESULT_OK) {
+                    Assert.assertEquals(String.valueOf(i), response.getResult());
+                } else {
+                    Assert.assertEquals(ResponseCodes.RESULT_OVERLOADED, response.getError());
+                }
+
+            }
+
+        } finally {
+            stop(thread);
+        }
+
+        Assert.assertEquals(0, listener.getInFlightCount());
+
+        handler.verify();
+
+    }
+
+    @Test
+    public void testExpiredWhileQueued() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+
+        UniquidSimplifier simplifier = createSimplifier();
+        simplifier.setDefaultTimeout(50, TimeUnit.MILLISECONDS);
+
+        Listener listener = new Listener.Builder()
+                .setHandler((parent, message) -> {
+
+                    FunctionRequestMessage request = (FunctionRequestMessage) message;
+
+                    if (request.getId() == 0) {
+                        try {
+                            // Keep the only worker busy past the deadline of the next request
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    return createResponse(request);
+                })
+                .setWorkerThreads(1)
+                .setConnectorSupplier(() -> connector)
+                .build();
+
+        listener.setParentSimplifier(simplifier);
+
+        Thread thread = start(listener);
+
+        try {
+
+            CompletableFuture<FunctionResponseMessage> first = connector.send(createRequest(0, "user"));
+            CompletableFuture<FunctionResponseMessage> second = connector.send(createRequest(1, "user"));
+
+            Assert.assertEquals("0", first.get(5, TimeUnit.SECONDS).getResult());
+            Assert.assertEquals(ResponseCodes.RESULT_TIMEOUT, second.get(5, TimeUnit.SECONDS).getError());
+
+        } finally {
+            stop(thread);
+            simplifier.shutdown();
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQueueCapacity() {
+
+        new Listener.Builder().setQueueCapacity(0);
+
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import com.uniquid.core.impl.test.DummyProviderRegister;
+import com.uniquid.register.provider.ProviderChannel;
+import com.uniquid.register.provider.ProviderRegister;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class AuthorizationTableTest {
+
+    private static ProviderChannel createChannel(String userAddress, byte[] bitmask) {
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", userAddress, new String(Hex.encode(bitmask)));
+        providerChannel.setUntil(System.currentTimeMillis() + 600000);
+
+        return providerChannel;
+    }
+
+    @Test
+    public void testBitmaskContract() throws Exception {
+
+        byte[] b = {0, 0, 0, 0, 64, 0, 0, 0, (byte) 0x81, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+
+        ContractPermission permission = ContractPermission.compile(createChannel("userAddress", b));
+
+        Assert.assertEquals(ContractPermission.VERSION_BITMASK, permission.getContractVersion());
+        Assert.assertTrue(Arrays.equals(b, permission.getPayload()));
+
+        BitSet bitset = BitSet.valueOf(Arrays.copyOfRange(b, 1, b.length));
+
+        long now = System.currentTimeMillis();
+
+        for (int function = 0; function < 200; function++) {
+
+            int expected = bitset.get(function) ? AuthorizationTable.AUTHORIZED : AuthorizationTable.NOT_AUTHORIZED;
+
+            Assert.assertEquals("function " + function, expected, permission.check(function, now));
+
+        }
+
+        Assert.assertEquals(AuthorizationTable.NOT_AUTHORIZED, permission.check(-1, now));
+
+    }
+
+    @Test
+    public void testSingleFunctionContract() throws Exception {
+
+        byte[] b = {1, 30, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+        ContractPermission permission = ContractPermission.compile(createChannel("userAddress", b));
+
+        long now = System.currentTimeMillis();
+
+        Assert.assertEquals(ContractPermission.VERSION_SINGLE_FUNCTION, permission.getContractVersion());
+        Assert.assertEquals(AuthorizationTable.AUTHORIZED, permission.check(30, now));
+        Assert.assertEquals(AuthorizationTable.NOT_AUTHORIZED, permission.check(31, now));
+
+    }
+
+    @Test
+    public void testOwnerBit() throws Exception {
+
+        byte[] owner = {0, 0, 0, 0, 0x20, 0, 0, 0, 0x40};
+        byte[] user = {0, 0, 0, 0, 0x40, 0, 0, 0, 0x40};
+        byte[] single = {1, 29};
+
+        Assert.assertTrue(ContractPermission.compile(createChannel("userAddress", owner)).isOwner());
+        Assert.assertFalse(ContractPermission.compile(createChannel("userAddress", user)).isOwner());
+        Assert.assertFalse(ContractPermission.compile(createChannel("userAddress", single)).isOwner());
+
+    }
+
+    @Test
+    public void testInvalidContract() throws Exception {
+
+        byte[] b = {2, 0, 0, 0, 64};
+
+        long now = System.currentTimeMillis();
+
+        ContractPermission permission = ContractPermission.compile(createChannel("userAddress", b));
+
+        Assert.assertEquals(ContractPermission.VERSION_INVALID, permission.getContractVersion());
+        Assert.assertEquals(AuthorizationTable.INVALID_CONTRACT_VERSION, permission.check(30, now));
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress", "bitmask");
+        providerChannel.setUntil(now + 600000);
+
+        permission = ContractPermission.compile(providerChannel);
+
+        Assert.assertEquals(ContractPermission.VERSION_INVALID, permission.getContractVersion());
+        Assert.assertEquals(AuthorizationTable.INVALID_CONTRACT_VERSION, permission.check(30, now));
+
+    }
+
+    @Test
+    public void testExpiredContract() throws Exception {
+
+        byte[] b = {0, 0, 0, 0, 64};
+
+        ProviderChannel providerChannel = createChannel("userAddress", b);
+        providerChannel.setSince(1000);
+        providerChannel.setUntil(2000);
+
+        ContractPermission permission = ContractPermission.compile(providerChannel);
+
+        Assert.assertEquals(AuthorizationTable.CONTRACT_EXPIRED, permission.check(30, 999));
+        Assert.assertEquals(AuthorizationTable.AUTHORIZED, permission.check(30, 1000));
+        Assert.assertEquals(AuthorizationTable.AUTHORIZED, permission.check(30, 2000));
+        Assert.assertEquals(AuthorizationTable.CONTRACT_EXPIRED, permission.check(30, 2001));
+
+    }
+
+    @Test
+    public void testPutRemoveReload() throws Exception {
+
+        byte[] b = {0, 0, 0, 0, 64};
+
+        AuthorizationTable authorizationTable = new AuthorizationTable();
+
+        ProviderChannel providerChannel = createChannel("userAddress", b);
+
+        Assert.assertNull(authorizationTable.get("userAddress"));
+        Assert.assertNull(authorizationTable.get(null));
+
+        authorizationTable.put(providerChannel);
+
+        Assert.assertEquals(1, authorizationTable.size());
+        Assert.assertEquals("providerAddress", authorizationTable.get("userAddress").getProviderAddress());
+
+        authorizationTable.remove(providerChannel);
+
+        Assert.assertNull(authorizationTable.get("userAddress"));
+
+        ProviderRegister providerRegister = new DummyProviderRegister();
+        providerRegister.insertChannel(createChannel("userAddress1", b));
+        providerRegister.insertChannel(createChannel("userAddress2", b));
+
+        authorizationTable.put(providerChannel);
+        authorizationTable.reload(providerRegister);
+
+        Assert.assertEquals(2, authorizationTable.size());
+        Assert.assertNull(authorizationTable.get("userAddress"));
+        Assert.assertNotNull(authorizationTable.get("userAddress1"));
+        Assert.assertNotNull(authorizationTable.get("userAddress2"));
+
+    }
+
+    @Test
+    public void testPutIfCurrent() throws Exception {
+
+        byte[] b = {0, 0, 0, 0, 64};
+
+        AuthorizationTable authorizationTable = new AuthorizationTable();
+
+        ProviderChannel providerChannel = createChannel("userAddress", b);
+
+        long generation = authorizationTable.getGeneration();
+
+        // a revocation happens while the register is being queried
+        authorizationTable.remove(providerChannel);
+
+        Assert.assertNotNull(authorizationTable.putIfCurrent(providerChannel, generation));
+        Assert.assertNull(authorizationTable.get("userAddress"));
+
+        Assert.assertNotNull(authorizationTable.putIfCurrent(providerChannel, authorizationTable.getGeneration()));
+        Assert.assertNotNull(authorizationTable.get("userAddress"));
+
+    }
+
+    @Test
+    public void testRemoveSupersededImprinting() throws Exception {
+
+        byte[] b = {0, 0, 0, 0, 64};
+
+        AuthorizationTable authorizationTable = new AuthorizationTable();
+
+        ProviderChannel imprinting = createChannel("owner", b);
+        imprinting.setRevokeAddress("IMPRINTING");
+
+        ProviderChannel contract = createChannel("userAddress1", b);
+        contract.setRevokeAddress("revokeAddress1");
+
+        Assert.assertNull(authorizationTable.removeSupersededImprinting(contract));
+
+        authorizationTable.put(imprinting);
+
+        Assert.assertNull(authorizationTable.removeSupersededImprinting(imprinting));
+        Assert.assertNotNull(authorizationTable.get("owner"));
+
+        long generation = authorizationTable.getGeneration();
+
+        Assert.assertEquals("owner", authorizationTable.removeSupersededImprinting(contract));
+        authorizationTable.put(contract);
+
+        Assert.assertNull(authorizationTable.get("owner"));
+        Assert.assertNotNull(authorizationTable.get("userAddress1"));
+        Assert.assertNotEquals(generation, authorizationTable.getGeneration());
+
+        // the imprinting channel is kept when other contracts exist
+        authorizationTable.put(imprinting);
+
+        ProviderChannel other = createChannel("userAddress2", b);
+        other.setRevokeAddress("revokeAddress2");
+
+        Assert.assertNull(authorizationTable.removeSupersededImprinting(other));
+        Assert.assertNotNull(authorizationTable.get("owner"));
+
+    }
+
+}
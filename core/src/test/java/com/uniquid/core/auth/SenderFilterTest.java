@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.auth;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class SenderFilterTest {
+
+    @Test
+    public void testBloomFilter() {
+
+        BloomFilter bloomFilter = new BloomFilter(1000, 0.01);
+
+        for (int i = 0; i < 1000; i++) {
+            bloomFilter.put("address" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(bloomFilter.mightContain("address" + i));
+        }
+
+        int falsePositives = 0;
+
+        for (int i = 0; i < 10000; i++) {
+            if (bloomFilter.mightContain("unknown" + i)) {
+                falsePositives++;
+            }
+        }
+
+        Assert.assertTrue(falsePositives < 300);
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBloomFilterInvalidProbability() {
+
+        new BloomFilter(1000, 1.5);
+
+    }
+
+    @Test
+    public void testNegativeCache() throws Exception {
+
+        NegativeCache negativeCache = new NegativeCache(10, 50, TimeUnit.MILLISECONDS);
+
+        negativeCache.put("address");
+
+        Assert.assertTrue(negativeCache.contains("address"));
+        Assert.assertFalse(negativeCache.contains("other"));
+
+        Thread.sleep(100);
+
+        Assert.assertFalse(negativeCache.contains("address"));
+
+        for (int i = 0; i < 100; i++) {
+            negativeCache.put("address" + i);
+        }
+
+        Assert.assertTrue(negativeCache.size() <= 10);
+        Assert.assertTrue(negativeCache.contains("address99"));
+
+        negativeCache.remove("address99");
+
+        Assert.assertFalse(negativeCache.contains("address99"));
+
+    }
+
+    @Test
+    public void testSenderFilter() {
+
+        SenderFilter senderFilter = new SenderFilter(100, 0.001, 100, 1, TimeUnit.MINUTES);
+
+        senderFilter.rebuild(Arrays.asList("address1", "address2"));
+
+        Assert.assertFalse(senderFilter.reject("address1"));
+        Assert.assertFalse(senderFilter.reject("address2"));
+        Assert.assertTrue(senderFilter.reject("address3"));
+
+        senderFilter.senderAuthorized("address3");
+
+        Assert.assertFalse(senderFilter.reject("address3"));
+
+        senderFilter.senderUnknown("address3");
+
+        Assert.assertTrue(senderFilter.reject("address3"));
+
+        senderFilter.senderAuthorized("address3");
+
+        Assert.assertFalse(senderFilter.reject("address3"));
+
+        senderFilter.rebuild(Arrays.asList("address1"));
+
+        Assert.assertTrue(senderFilter.reject("address2"));
+        Assert.assertEquals(3, senderFilter.getRejectedCount());
+
+    }
+
+}
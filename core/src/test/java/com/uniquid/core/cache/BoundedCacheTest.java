@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testPutIfAbsent() {
+
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.FIFO);
+
+        Assert.assertNull(cache.putIfAbsent("key", "first"));
+        Assert.assertEquals("first", cache.putIfAbsent("key", "second"));
+        Assert.assertEquals("first", cache.get("key"));
+        Assert.assertNull(cache.get("other"));
+
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+
+        Assert.assertEquals("first", cache.remove("key"));
+        Assert.assertEquals(0, cache.size());
+
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 10, TimeUnit.MILLISECONDS, BoundedCache.EvictionPolicy.FIFO);
+
+        cache.put("key", "value");
+
+        Thread.sleep(50);
+
+        Assert.assertNull(cache.get("key"));
+        Assert.assertNull(cache.putIfAbsent("key", "new"));
+        Assert.assertEquals("new", cache.get("key"));
+
+    }
+
+    @Test
+    public void testFifoEviction() {
+
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.FIFO);
+
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.get("a");
+        cache.put("c", "c");
+
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals("b", cache.get("b"));
+        Assert.assertEquals("c", cache.get("c"));
+        Assert.assertEquals(1, cache.getEvictionCount());
+
+    }
+
+    @Test
+    public void testLruEviction() {
+
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.LRU);
+
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.get("a");
+        cache.put("c", "c");
+
+        Assert.assertEquals("a", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("c", cache.get("c"));
+
+    }
+
+    @Test
+    public void testRemoveIf() {
+
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.LRU);
+
+        cache.put("user1:a", "a");
+        cache.put("user1:b", "b");
+        cache.put("user2:a", "c");
+
+        Assert.assertEquals(2, cache.removeIf(key -> key.startsWith("user1:")));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals("c", cache.get("user2:a"));
+
+    }
+
+}
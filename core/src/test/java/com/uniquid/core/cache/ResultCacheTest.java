@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.cache;
+
+import com.uniquid.core.provider.CacheableFunction;
+import com.uniquid.core.provider.impl.GenericFunction;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ResultCacheTest {
+
+    private static class TestFunction extends GenericFunction implements CacheableFunction {
+
+        private final long ttl;
+        private final boolean perUser;
+
+        private TestFunction(long ttl, boolean perUser) {
+            this.ttl = ttl;
+            this.perUser = perUser;
+        }
+
+        @Override
+        public long getCacheTtl() {
+            return ttl;
+        }
+
+        @Override
+        public boolean isCachedPerUser() {
+            return perUser;
+        }
+
+        @Override
+        public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+            outputMessage.setResult("result");
+        }
+
+    }
+
+    private static FunctionRequestMessage createRequest(String user, String parameters) {
+
+        FunctionRequestMessage request = new FunctionRequestMessage();
+        request.setUser(user);
+        request.setFunction(40);
+        request.setParameters(parameters);
+
+        return request;
+    }
+
+    private static FunctionResponseMessage createResponse(String result, int error) {
+
+        FunctionResponseMessage response = new FunctionResponseMessage();
+        response.setResult(result);
+        response.setError(error);
+
+        return response;
+    }
+
+    @Test
+    public void testShared() {
+
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        TestFunction function = new TestFunction(60000, false);
+
+        Assert.assertNull(cache.get(function, createRequest("user1", "params"), null));
+
+        cache.put(function, createRequest("user1", "params"), null,
+                createResponse("result", FunctionResponseMessage.RESULT_OK));
+
+        FunctionResponseMessage response = cache.get(function, createRequest("user2", "params"), null);
+
+        Assert.assertNotNull(response);
+        Assert.assertEquals("result", response.getResult());
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, response.getError());
+
+        Assert.assertNull(cache.get(function, createRequest("user1", "other"), null));
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+
+    }
+
+    @Test
+    public void testPerUser() {
+
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        TestFunction function = new TestFunction(60000, true);
+
+        cache.put(function, createRequest("user1", "params"), null,
+                createResponse("result", FunctionResponseMessage.RESULT_OK));
+
+        Assert.assertNotNull(cache.get(function, createRequest("user1", "params"), null));
+        Assert.assertNull(cache.get(function, createRequest("user2", "params"), null));
+
+        Assert.assertEquals(1, cache.invalidateUser("user1"));
+        Assert.assertNull(cache.get(function, createRequest("user1", "params"), null));
+
+    }
+
+    @Test
+    public void testErrorNotCached() {
+
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        TestFunction function = new TestFunction(60000, false);
+
+        cache.put(function, createRequest("user1", "params"), null,
+                createResponse("error", FunctionResponseMessage.RESULT_ERROR));
+
+        Assert.assertEquals(0, cache.size());
+
+    }
+
+    @Test
+    public void testFunctionTtl() throws Exception {
+
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        TestFunction function = new TestFunction(10, false);
+
+        cache.put(function, createRequest("user1", "params"), null,
+                createResponse("result", FunctionResponseMessage.RESULT_OK));
+
+        Thread.sleep(50);
+
+        Assert.assertNull(cache.get(function, createRequest("user1", "params"), null));
+        Assert.assertEquals(0, cache.size());
+
+    }
+
+    @Test
+    public void testPayload() {
+
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        TestFunction function = new TestFunction(60000, false);
+
+        cache.put(function, createRequest("user1", "params"), new byte[] {1},
+                createResponse("result", FunctionResponseMessage.RESULT_OK));
+
+        Assert.assertNotNull(cache.get(function, createRequest("user2", "params"), new byte[] {1}));
+        Assert.assertNull(cache.get(function, createRequest("user2", "params"), new byte[] {2}));
+        Assert.assertNull(cache.get(function, createRequest("user2", "params"), null));
+
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.connector;
+
+import com.uniquid.connector.ConnectorException;
+import com.uniquid.connector.EndPoint;
+import com.uniquid.core.Listener;
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.params.UniquidRegTest;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class InMemoryConnectorTest {
+
+    @BeforeClass
+    public static void setUp() {
+        org.bitcoinj.core.Context.propagate(new org.bitcoinj.core.Context(UniquidRegTest.get()));
+    }
+
+    private static FunctionRequestMessage createRequest(long id) {
+
+        FunctionRequestMessage request = new FunctionRequestMessage();
+        request.setId(id);
+        request.setUser("userAddress");
+        request.setFunction(33);
+        request.setParameters("params " + id);
+
+        return request;
+    }
+
+    @Test
+    public void testExchange() throws Exception {
+
+        InMemoryConnector connector = new InMemoryConnector();
+        connector.connect();
+
+        FunctionRequestMessage request = createRequest(1);
+
+        List<FunctionResponseMessage> responses = new ArrayList<>();
+
+        CompletableFuture<FunctionResponseMessage> future = connector.send(request, responses::add);
+
+        EndPoint endPoint = connector.accept();
+
+        // The request is not copied
+        Assert.assertSame(request, endPoint.getRequest());
+
+        FunctionResponseMessage chunk = new FunctionResponseMessage();
+        chunk.setError(ResponseCodes.RESULT_PARTIAL);
+
+        endPoint.setResponse(chunk);
+        endPoint.flush();
+
+        Assert.assertFalse(future.isDone());
+
+        FunctionResponseMessage last = new FunctionResponseMessage();
+        last.setError(FunctionResponseMessage.RESULT_OK);
+
+        endPoint.setResponse(last);
+        endPoint.flush();
+
+        Assert.assertSame(last, future.get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(2, responses.size());
+
+    }
+
+    @Test(expected = ConnectorException.class)
+    public void testClosed() throws Exception {
+
+        InMemoryConnector connector = new InMemoryConnector();
+        connector.connect();
+        connector.close();
+
+        connector.accept();
+
+    }
+
+    @Test
+    public void testListener() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+
+        Listener listener = new Listener.Builder()
+                .setHandler((simplifier, message) -> {
+
+                    FunctionResponseMessage response = new FunctionResponseMessage();
+                    response.setError(FunctionResponseMessage.RESULT_OK);
+                    response.setResult(((FunctionRequestMessage) message).getParameters());
+
+                    return response;
+                })
+                .setWorkerThreads(2)
+                .setConnectorSupplier(() -> connector)
+                .build();
+
+        Thread thread = new Thread(listener);
+        thread.start();
+
+        try {
+
+            List<CompletableFuture<FunctionResponseMessage>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 100; i++) {
+                futures.add(connector.send(createRequest(i)));
+            }
+
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals("params " + i, futures.get(i).get(5, TimeUnit.SECONDS).getResult());
+            }
+
+        } finally {
+
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        }
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertFalse(connector.isConnected());
+
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControllerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testBelowTarget() {
+
+        AdmissionController controller = new AdmissionController(5, 100, TimeUnit.MILLISECONDS, 10);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertFalse(controller.shouldShed(1 * MS, i * MS));
+        }
+
+        Assert.assertEquals(0, controller.getShedCount());
+
+    }
+
+    @Test
+    public void testShortBurst() {
+
+        AdmissionController controller = new AdmissionController(5, 100, TimeUnit.MILLISECONDS, 10);
+
+        // Above target for less than an interval
+        Assert.assertFalse(controller.shouldShed(10 * MS, 0));
+        Assert.assertFalse(controller.shouldShed(10 * MS, 50 * MS));
+        Assert.assertFalse(controller.shouldShed(1 * MS, 60 * MS));
+        Assert.assertFalse(controller.shouldShed(10 * MS, 120 * MS));
+
+        Assert.assertEquals(0, controller.getShedCount());
+
+    }
+
+    @Test
+    public void testStandingQueue() {
+
+        AdmissionController controller = new AdmissionController(5, 100, TimeUnit.MILLISECONDS, 10);
+
+        Assert.assertFalse(controller.shouldShed(10 * MS, 0));
+        Assert.assertFalse(controller.shouldShed(10 * MS, 50 * MS));
+
+        // Above target for a whole interval: start shedding
+        Assert.assertTrue(controller.shouldShed(10 * MS, 100 * MS));
+        Assert.assertFalse(controller.shouldShed(10 * MS, 150 * MS));
+
+        // Next drop after interval / sqrt(1), then interval / sqrt(2)
+        Assert.assertTrue(controller.shouldShed(10 * MS, 200 * MS));
+        Assert.assertFalse(controller.shouldShed(10 * MS, 260 * MS));
+        Assert.assertTrue(controller.shouldShed(10 * MS, 271 * MS));
+
+        // Delay back below target
+        Assert.assertFalse(controller.shouldShed(1 * MS, 280 * MS));
+        Assert.assertFalse(controller.shouldShed(10 * MS, 290 * MS));
+
+        Assert.assertEquals(3, controller.getShedCount());
+
+    }
+
+    @Test
+    public void testPermits() throws Exception {
+
+        AdmissionController controller = new AdmissionController(5, 100, TimeUnit.MILLISECONDS, 2);
+
+        controller.acquire();
+        controller.acquire();
+
+        Assert.assertEquals(0, controller.getAvailablePermits());
+
+        controller.release();
+
+        Assert.assertEquals(1, controller.getAvailablePermits());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxInFlight() {
+
+        new AdmissionController(5, 100, TimeUnit.MILLISECONDS, 0);
+
+    }
+
+}
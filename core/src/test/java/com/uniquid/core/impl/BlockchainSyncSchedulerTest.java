@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.core.impl.test.DummyNode;
+import com.uniquid.register.provider.ProviderChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class BlockchainSyncSchedulerTest {
+
+    private static class CountingNode extends DummyNode {
+
+        private final Semaphore updates = new Semaphore(0);
+
+        @Override
+        public void updateNode() {
+            updates.release();
+        }
+
+    }
+
+    @Test
+    public void testDelays() {
+
+        BlockchainSyncScheduler scheduler = new BlockchainSyncScheduler(new DummyNode(), null, 10, 40, 5,
+                60000, TimeUnit.MILLISECONDS);
+
+        // Idle synchronizations back off up to the maximum
+        Assert.assertEquals(20, scheduler.nextDelay(false));
+        Assert.assertEquals(40, scheduler.nextDelay(false));
+        Assert.assertEquals(40, scheduler.nextDelay(false));
+
+        // Activity brings the delay back to the minimum
+        Assert.assertEquals(10, scheduler.nextDelay(true));
+
+        // Pending transactions cap the delay until a contract change is seen
+        scheduler.markPending();
+
+        Assert.assertTrue(scheduler.isPending());
+        Assert.assertEquals(5, scheduler.nextDelay(false));
+        Assert.assertEquals(20, scheduler.getDelay(TimeUnit.MILLISECONDS));
+
+        scheduler.onProviderContractCreated(new ProviderChannel("provider", "user", "bitmask"));
+
+        Assert.assertFalse(scheduler.isPending());
+        Assert.assertEquals(40, scheduler.nextDelay(false));
+
+    }
+
+    @Test
+    public void testTriggerInterval() throws Exception {
+
+        CountingNode node = new CountingNode();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+
+            BlockchainSyncScheduler scheduler = new BlockchainSyncScheduler(node, executor, 1, 1, 1,
+                    1, TimeUnit.HOURS);
+            scheduler.setMinTriggerInterval(200, TimeUnit.MILLISECONDS);
+
+            CompletableFuture<Void> future = scheduler.start();
+
+            Assert.assertTrue(node.updates.tryAcquire(1, 5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+
+            // A flood of triggers runs a single synchronization, after the minimum interval
+            for (int i = 0; i < 100; i++) {
+                scheduler.trigger();
+            }
+
+            Assert.assertTrue(node.updates.tryAcquire(1, 5, TimeUnit.SECONDS));
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+
+            Assert.assertFalse(node.updates.tryAcquire(1, 400, TimeUnit.MILLISECONDS));
+
+            future.cancel(false);
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void testTriggerAndCancel() throws Exception {
+
+        CountingNode node = new CountingNode();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+
+            BlockchainSyncScheduler scheduler = new BlockchainSyncScheduler(node, executor, 1, 1, 1,
+                    1, TimeUnit.HOURS);
+            scheduler.setMinTriggerInterval(0, TimeUnit.MILLISECONDS);
+
+            CompletableFuture<Void> future = scheduler.start();
+
+            Assert.assertTrue(node.updates.tryAcquire(1, 5, TimeUnit.SECONDS));
+
+            // The next one is in an hour: a trigger runs it now
+            scheduler.trigger();
+
+            Assert.assertTrue(node.updates.tryAcquire(1, 5, TimeUnit.SECONDS));
+            Assert.assertTrue(scheduler.getSyncCount() >= 1);
+
+            scheduler.markPending();
+            Assert.assertTrue(scheduler.isPending());
+
+            future.cancel(false);
+
+            Assert.assertTrue(future.isCancelled());
+
+            scheduler.trigger();
+
+            Assert.assertFalse(node.updates.tryAcquire(1, 200, TimeUnit.MILLISECONDS));
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.params.UniquidRegTest;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class BulkheadTest {
+
+    @BeforeClass
+    public static void setUp() {
+
+        // Bulkhead threads propagate the bitcoinj context
+        org.bitcoinj.core.Context.propagate(new org.bitcoinj.core.Context(UniquidRegTest.get()));
+
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead("test", 2, 2, Bulkhead.RejectionPolicy.REJECT);
+
+        CompletableFuture<String> future = bulkhead.submit(() -> CompletableFuture.completedFuture(Thread.currentThread().getName()));
+
+        Assert.assertTrue(future.get(5, TimeUnit.SECONDS).startsWith("test"));
+
+        bulkhead.shutdown();
+
+    }
+
+    @Test
+    public void testReject() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Bulkhead.RejectionPolicy.REJECT);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        CompletableFuture<String> running = bulkhead.submit(() -> {
+
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return CompletableFuture.completedFuture("running");
+        });
+
+        CompletableFuture<String> queued = bulkhead.submit(() -> CompletableFuture.completedFuture("queued"));
+
+        CompletableFuture<String> rejected = bulkhead.submit(() -> CompletableFuture.completedFuture("rejected"));
+
+        try {
+
+            rejected.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+
+        } catch (ExecutionException ex) {
+
+            Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+
+        }
+
+        Assert.assertEquals(1, bulkhead.getRejectedCount());
+
+        latch.countDown();
+
+        Assert.assertEquals("running", running.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+
+        bulkhead.shutdown();
+
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Bulkhead.RejectionPolicy.CALLER_RUNS);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        bulkhead.submit(() -> {
+
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return CompletableFuture.completedFuture("running");
+        });
+
+        bulkhead.submit(() -> CompletableFuture.completedFuture("queued"));
+
+        String caller = Thread.currentThread().getName();
+
+        CompletableFuture<String> overflow = bulkhead.submit(() -> CompletableFuture.completedFuture(Thread.currentThread().getName()));
+
+        Assert.assertEquals(caller, overflow.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, bulkhead.getRejectedCount());
+
+        latch.countDown();
+
+        bulkhead.shutdown();
+
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+
+        for (Bulkhead.RejectionPolicy policy : Bulkhead.RejectionPolicy.values()) {
+
+            Bulkhead bulkhead = new Bulkhead("test", 1, 1, policy);
+            bulkhead.shutdown();
+
+            CompletableFuture<String> future = bulkhead.submit(() -> CompletableFuture.completedFuture("late"));
+
+            try {
+
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+
+            } catch (ExecutionException ex) {
+
+                Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testNoQueue() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead("test", 1, 0, Bulkhead.RejectionPolicy.REJECT);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        bulkhead.submit(() -> {
+
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return CompletableFuture.completedFuture("running");
+        });
+
+        CompletableFuture<String> rejected = bulkhead.submit(() -> CompletableFuture.completedFuture("rejected"));
+
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+
+        latch.countDown();
+
+        bulkhead.shutdown();
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQueueCapacity() {
+        new Bulkhead("test", 1, -1, Bulkhead.RejectionPolicy.REJECT);
+    }
+
+    @Test
+    public void testException() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1, Bulkhead.RejectionPolicy.REJECT);
+
+        CompletableFuture<String> future = bulkhead.submit(() -> {
+            throw new IllegalStateException("Error!");
+        });
+
+        try {
+
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+
+        } catch (ExecutionException ex) {
+
+            Assert.assertEquals("Error!", ex.getCause().getMessage());
+
+        }
+
+        bulkhead.shutdown();
+
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.core.cache.BoundedCache;
+import com.uniquid.core.cache.IdempotencyStore;
+import com.uniquid.core.impl.test.DummyNode;
+import com.uniquid.core.impl.test.DummyProviderRegister;
+import com.uniquid.core.impl.test.DummyUserRegister;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.register.RegisterFactory;
+import com.uniquid.register.exception.RegisterException;
+import com.uniquid.register.provider.ProviderChannel;
+import com.uniquid.register.provider.ProviderRegister;
+import com.uniquid.register.transaction.TransactionManager;
+import com.uniquid.register.user.UserRegister;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class DefaultRequestHandlerTest {
+
+    private static UniquidSimplifier createSimplifier() throws Exception {
+
+        final ProviderRegister dummyProvider = new DummyProviderRegister();
+
+        byte[] bitmask = {0, 0, 0, 0, (byte) 0x80};
+
+        ProviderChannel providerChannel = new ProviderChannel("providerAddress", "userAddress",
+                new String(Hex.encode(bitmask)));
+        providerChannel.setUntil(System.currentTimeMillis() + 600000);
+
+        dummyProvider.insertChannel(providerChannel);
+
+        ProviderChannel expiredChannel = new ProviderChannel("providerAddress", "expiredAddress",
+                new String(Hex.encode(bitmask)));
+        expiredChannel.setUntil(System.currentTimeMillis() - 600000);
+
+        dummyProvider.insertChannel(expiredChannel);
+
+        final UserRegister dummyUser = new DummyUserRegister();
+
+        RegisterFactory dummyFactory = new RegisterFactory() {
+
+            @Override
+            public UserRegister getUserRegister() throws RegisterException {
+                return dummyUser;
+            }
+
+            @Override
+            public ProviderRegister getProviderRegister() throws RegisterException {
+                return dummyProvider;
+            }
+
+            @Override
+            public TransactionManager getTransactionManager() throws RegisterException {
+                return null;
+            }
+
+        };
+
+        return new UniquidSimplifier(dummyFactory, new DummyNode());
+    }
+
+    private static FunctionRequestMessage createRequest(String user, int function) {
+
+        FunctionRequestMessage request = new FunctionRequestMessage();
+        request.setUser(user);
+        request.setFunction(function);
+        request.setParameters("params");
+
+        return request;
+    }
+
+    @Test
+    public void testAuthorized() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+
+        DefaultRequestHandler handler = new DefaultRequestHandler(true);
+
+        FunctionResponseMessage response = handler.handleMessage(simplifier, createRequest("userAddress", 31));
+
+        Assert.assertNotNull(response);
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, response.getError());
+        Assert.assertEquals("UID_echo: params", response.getResult());
+        Assert.assertEquals("providerAddress", response.getProvider());
+
+        simplifier.shutdown();
+
+    }
+
+    @Test
+    public void testSilentDrop() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+
+        DefaultRequestHandler handler = new DefaultRequestHandler();
+
+        Assert.assertNull(handler.handleMessage(simplifier, createRequest("unknownAddress", 31)));
+        Assert.assertNull(handler.handleMessage(simplifier, createRequest("userAddress", 30)));
+        Assert.assertNull(handler.handleMessage(simplifier, createRequest("expiredAddress", 31)));
+
+        simplifier.shutdown();
+
+    }
+
+    @Test
+    public void testFastFail() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+
+        DefaultRequestHandler handler = new DefaultRequestHandler(true);
+
+        FunctionResponseMessage response = handler.handleMessage(simplifier, createRequest("unknownAddress", 31));
+
+        Assert.assertEquals(ResponseCodes.RESULT_SENDER_NOT_FOUND, response.getError());
+        Assert.assertNull(response.getProvider());
+
+        response = handler.handleMessage(simplifier, createRequest("userAddress", 30));
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_NO_PERMISSION, response.getError());
+        Assert.assertEquals("providerAddress", response.getProvider());
+
+        response = handler.handleMessage(simplifier, createRequest("expiredAddress", 31));
+
+        Assert.assertEquals(ResponseCodes.RESULT_CONTRACT_EXPIRED, response.getError());
+
+        simplifier.shutdown();
+
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+
+        DefaultRequestHandler handler = new DefaultRequestHandler(true);
+
+        FunctionRequestMessage request = createRequest("userAddress", RequestMessageHandler.BATCH_FUNCTION);
+        request.setParameters("[{\"function\": 31, \"parameters\": \"first\"}, {\"function\": 30}, "
+                + "{\"function\": 31, \"parameters\": \"second\"}]");
+
+        FunctionResponseMessage response = handler.handleMessageAsync(simplifier, request).toCompletableFuture().get();
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, response.getError());
+        Assert.assertEquals("providerAddress", response.getProvider());
+
+        JSONArray results = new JSONArray(response.getResult());
+
+        Assert.assertEquals(3, results.length());
+
+        JSONObject first = results.getJSONObject(0);
+        Assert.assertEquals(31, first.getInt("function"));
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, first.getInt("error"));
+        Assert.assertEquals("UID_echo: first", first.getString("result"));
+
+        JSONObject second = results.getJSONObject(1);
+        Assert.assertEquals(30, second.getInt("function"));
+        Assert.assertEquals(FunctionResponseMessage.RESULT_NO_PERMISSION, second.getInt("error"));
+
+        Assert.assertEquals("UID_echo: second", results.getJSONObject(2).getString("result"));
+
+        // The synchronous path returns the same combined response
+        Assert.assertEquals(response.getResult(), handler.handleMessage(simplifier, request).getResult());
+
+        simplifier.shutdown();
+
+    }
+
+    @Test
+    public void testBatchDeduplicated() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+        simplifier.setIdempotencyStore(new IdempotencyStore(16, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.FIFO));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        DefaultRequestHandler handler = new DefaultRequestHandler(true, executor);
+
+        FunctionRequestMessage request = createRequest("userAddress", RequestMessageHandler.BATCH_FUNCTION);
+        request.setId(Long.MAX_VALUE);
+        request.setParameters("[{\"function\": 31, \"parameters\": \"first\"}, "
+                + "{\"function\": 31, \"parameters\": \"second\"}]");
+
+        FunctionResponseMessage response = handler.handleMessageAsync(simplifier, request).toCompletableFuture().get();
+
+        // The entries share the id of the batch but are not deduplicated with each other
+        JSONArray results = new JSONArray(response.getResult());
+
+        Assert.assertEquals("UID_echo: first", results.getJSONObject(0).getString("result"));
+        Assert.assertEquals("UID_echo: second", results.getJSONObject(1).getString("result"));
+
+        // A redelivered batch receives the previous response
+        FunctionRequestMessage duplicate = createRequest("userAddress", RequestMessageHandler.BATCH_FUNCTION);
+        duplicate.setId(Long.MAX_VALUE);
+        duplicate.setParameters("[{\"function\": 31, \"parameters\": \"third\"}]");
+
+        Assert.assertEquals(response.getResult(), handler.handleMessage(simplifier, duplicate).getResult());
+
+        // A batch with a different id is executed, even if its entries' ids were seen
+        duplicate.setId(Long.MAX_VALUE - 1);
+
+        results = new JSONArray(handler.handleMessage(simplifier, duplicate).getResult());
+
+        Assert.assertEquals(1, results.length());
+        Assert.assertEquals("UID_echo: third", results.getJSONObject(0).getString("result"));
+
+        executor.shutdown();
+        simplifier.shutdown();
+
+    }
+
+    @Test
+    public void testBatchThrottledNotStored() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+        simplifier.setIdempotencyStore(new IdempotencyStore(16, 1, TimeUnit.MINUTES, BoundedCache.EvictionPolicy.FIFO));
+
+        // A single execution of the echo function is allowed
+        RateLimiter limiter = new RateLimiter(null, 100);
+        limiter.setFunctionLimit(31, new RateLimiter.Limit(0.001, 1));
+        simplifier.setRateLimiter(limiter);
+
+        DefaultRequestHandler handler = new DefaultRequestHandler(true);
+
+        FunctionRequestMessage request = createRequest("userAddress", RequestMessageHandler.BATCH_FUNCTION);
+        request.setId(1234);
+        request.setParameters("[{\"function\": 31, \"parameters\": \"first\"}, "
+                + "{\"function\": 31, \"parameters\": \"second\"}]");
+
+        JSONArray results = new JSONArray(handler.handleMessage(simplifier, request).getResult());
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, results.getJSONObject(0).getInt("error"));
+        Assert.assertEquals(ResponseCodes.RESULT_THROTTLED, results.getJSONObject(1).getInt("error"));
+
+        // Like a throttled request, the batch can be retried
+        Assert.assertEquals(0, simplifier.getIdempotencyStore().size());
+
+        simplifier.shutdown();
+
+    }
+
+    @Test
+    public void testBatchRefused() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier();
+
+        DefaultRequestHandler handler = new DefaultRequestHandler(true);
+
+        FunctionRequestMessage request = createRequest("unknownAddress", RequestMessageHandler.BATCH_FUNCTION);
+        request.setParameters("[{\"function\": 31, \"parameters\": \"first\"}]");
+
+        Assert.assertEquals(ResponseCodes.RESULT_SENDER_NOT_FOUND, handler.handleMessage(simplifier, request).getError());
+
+        request = createRequest("userAddress", RequestMessageHandler.BATCH_FUNCTION);
+        request.setParameters("not a batch");
+
+        Assert.assertEquals(FunctionResponseMessage.RESULT_ERROR, handler.handleMessage(simplifier, request).getError());
+
+        simplifier.shutdown();
+
+    }
+
+}
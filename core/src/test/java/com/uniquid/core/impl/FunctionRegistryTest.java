@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.core.provider.impl.FunctionConfigImpl;
+import com.uniquid.core.provider.impl.GenericFunction;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FunctionRegistryTest {
+
+    private static class TestFunction extends GenericFunction {
+
+        private boolean initialized;
+        private int initCount;
+        private boolean destroyed;
+
+        @Override
+        public void init() throws FunctionException {
+            initialized = true;
+            initCount++;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+
+        @Override
+        public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+            outputMessage.setResult("test");
+        }
+
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        TestFunction function = new TestFunction();
+
+        Assert.assertNull(registry.getFunction(33));
+
+        registry.register(33, function, new FunctionConfigImpl(null), null);
+
+        Assert.assertTrue(function.initialized);
+        Assert.assertSame(function, registry.getFunction(33));
+        Assert.assertNull(registry.get(33).getBulkhead());
+        Assert.assertEquals(1, registry.size());
+
+        Assert.assertNull(registry.getFunction(-1));
+        Assert.assertNull(registry.getFunction(FunctionRegistry.CAPACITY));
+
+    }
+
+    @Test
+    public void testInvalidNumber() {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        try {
+
+            registry.register(FunctionRegistry.CAPACITY, new TestFunction(), new FunctionConfigImpl(null), null);
+            Assert.fail();
+
+        } catch (FunctionException ex) {
+
+            Assert.assertEquals("Invalid function number!", ex.getMessage());
+
+        }
+
+        Assert.assertEquals(0, registry.size());
+
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        TestFunction first = new TestFunction();
+        TestFunction second = new TestFunction();
+
+        registry.register(40, first, new FunctionConfigImpl(null), null);
+        registry.register(40, second, new FunctionConfigImpl(null), null);
+
+        Assert.assertTrue(first.destroyed);
+        Assert.assertFalse(second.destroyed);
+        Assert.assertSame(second, registry.getFunction(40));
+        Assert.assertEquals(1, registry.size());
+
+    }
+
+    @Test
+    public void testRegisterSameInstance() throws Exception {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        TestFunction function = new TestFunction();
+
+        registry.register(40, function, new FunctionConfigImpl(null), null);
+        registry.register(40, function, new FunctionConfigImpl(null), null);
+
+        Assert.assertEquals(1, function.initCount);
+        Assert.assertFalse(function.destroyed);
+        Assert.assertSame(function, registry.getFunction(40));
+
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        TestFunction function = new TestFunction();
+
+        registry.register(50, function, new FunctionConfigImpl(null), null);
+
+        Assert.assertTrue(registry.unregister(50));
+        Assert.assertTrue(function.destroyed);
+        Assert.assertNull(registry.getFunction(50));
+
+        Assert.assertFalse(registry.unregister(50));
+
+    }
+
+    @Test
+    public void testDestroyAfterExecutions() throws Exception {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        TestFunction first = new TestFunction();
+
+        registry.register(40, first, new FunctionConfigImpl(null), null);
+
+        Runnable running = registry.acquire(40, first);
+        Assert.assertNotNull(running);
+
+        // Changing the bulkhead keeps the running executions of the function
+        registry.setBulkhead(40, null);
+
+        Runnable other = registry.acquire(40, first);
+        Assert.assertNotNull(other);
+
+        registry.register(40, new TestFunction(), new FunctionConfigImpl(null), null);
+
+        // Replaced while executing: destroyed by the last execution
+        Assert.assertFalse(first.destroyed);
+        Assert.assertNull(registry.acquire(40, first));
+
+        running.run();
+        Assert.assertFalse(first.destroyed);
+
+        other.run();
+        Assert.assertTrue(first.destroyed);
+
+    }
+
+    @Test
+    public void testSetBulkheadNotAvailable() {
+
+        FunctionRegistry registry = new FunctionRegistry();
+
+        try {
+
+            registry.setBulkhead(60, null);
+            Assert.fail();
+
+        } catch (FunctionException ex) {
+
+            Assert.assertEquals("Function not available!", ex.getMessage());
+
+        }
+
+    }
+
+}
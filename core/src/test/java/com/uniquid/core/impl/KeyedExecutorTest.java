@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class KeyedExecutorTest {
+
+    @Test
+    public void testOrder() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+
+            KeyedExecutor executor = new KeyedExecutor(pool, 1000);
+
+            ConcurrentHashMap<String, List<Integer>> results = new ConcurrentHashMap<>();
+            CountDownLatch done = new CountDownLatch(5 * 200);
+
+            for (int i = 0; i < 200; i++) {
+
+                for (int k = 0; k < 5; k++) {
+
+                    String key = "user" + k;
+                    int sequence = i;
+
+                    Assert.assertTrue(executor.execute(key, () -> {
+                        // Not synchronized: tasks of the same key never overlap
+                        results.computeIfAbsent(key, x -> new ArrayList<>()).add(sequence);
+                        done.countDown();
+                    }, Assert::fail));
+
+                }
+
+            }
+
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            for (List<Integer> result : results.values()) {
+
+                Assert.assertEquals(200, result.size());
+
+                for (int i = 0; i < 200; i++) {
+                    Assert.assertEquals(i, (int) result.get(i));
+                }
+
+            }
+
+        } finally {
+            pool.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void testAsyncCompletion() throws Exception {
+
+        KeyedExecutor executor = new KeyedExecutor(Runnable::run, 10);
+
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        List<String> started = new ArrayList<>();
+
+        executor.submit("user", () -> {
+            started.add("first");
+            return first;
+        }, Assert::fail);
+
+        executor.execute("user", () -> started.add("second"), Assert::fail);
+        executor.execute("other", () -> started.add("other"), Assert::fail);
+
+        // The second task waits for the completion of the first one
+        Assert.assertEquals(2, started.size());
+        Assert.assertEquals(1, executor.getQueuedCount());
+
+        first.complete(null);
+
+        Assert.assertEquals("second", started.get(2));
+        Assert.assertEquals(0, executor.getQueuedCount());
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+
+    }
+
+    @Test
+    public void testBound() {
+
+        List<Runnable> pending = new ArrayList<>();
+
+        KeyedExecutor executor = new KeyedExecutor(pending::add, 2);
+
+        Assert.assertTrue(executor.execute("user", () -> { }, Assert::fail));
+        Assert.assertTrue(executor.execute("user", () -> { }, Assert::fail));
+        Assert.assertTrue(executor.execute("user", () -> { }, Assert::fail));
+        Assert.assertFalse(executor.execute("user", () -> { }, Assert::fail));
+        Assert.assertTrue(executor.execute("other", () -> { }, Assert::fail));
+
+        Assert.assertEquals(2, executor.getActiveKeyCount());
+
+        // Every completion dispatches the next task of the key
+        while (!pending.isEmpty()) {
+            pending.remove(0).run();
+        }
+
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+        Assert.assertEquals(0, executor.getQueuedCount());
+
+    }
+
+    @Test
+    public void testRefused() {
+
+        List<String> refused = new ArrayList<>();
+
+        KeyedExecutor executor = new KeyedExecutor(task -> {
+            throw new RejectedExecutionException();
+        }, 10);
+
+        Assert.assertTrue(executor.execute("user", () -> { }, () -> refused.add("first")));
+
+        Assert.assertEquals(1, refused.size());
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+
+    }
+
+    @Test
+    public void testQueuedRefused() {
+
+        List<String> refused = new ArrayList<>();
+        List<Runnable> pending = new ArrayList<>();
+        boolean[] refusing = new boolean[1];
+
+        KeyedExecutor executor = new KeyedExecutor(task -> {
+            if (refusing[0]) {
+                throw new RejectedExecutionException();
+            }
+            pending.add(task);
+        }, 10);
+
+        executor.execute("user", () -> { }, () -> refused.add("first"));
+        executor.execute("user", () -> { }, () -> refused.add("second"));
+        executor.execute("user", () -> { }, () -> refused.add("third"));
+
+        refusing[0] = true;
+        pending.remove(0).run();
+
+        // Every waiting task is handed back instead of being stranded
+        Assert.assertEquals(Arrays.asList("second", "third"), refused);
+        Assert.assertEquals(0, executor.getQueuedCount());
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+
+        refusing[0] = false;
+
+        Assert.assertTrue(executor.execute("user", () -> { }, Assert::fail));
+        Assert.assertEquals(1, pending.size());
+
+    }
+
+}
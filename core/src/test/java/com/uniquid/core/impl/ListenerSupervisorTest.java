@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import com.uniquid.connector.Connector;
+import com.uniquid.connector.ConnectorException;
+import com.uniquid.connector.EndPoint;
+import com.uniquid.core.Listener;
+import com.uniquid.core.connector.InMemoryConnector;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ListenerSupervisorTest {
+
+    @Test
+    public void testBackoff() {
+
+        ListenerSupervisor supervisor = new ListenerSupervisor(new Listener("broker", "topic", null), 100, 1000,
+                TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 100; i++) {
+
+            long first = supervisor.getBackoff(0);
+            Assert.assertTrue(first >= 50 && first <= 100);
+
+            long third = supervisor.getBackoff(2);
+            Assert.assertTrue(third >= 200 && third <= 400);
+
+            long capped = supervisor.getBackoff(40);
+            Assert.assertTrue(capped >= 500 && capped <= 1000);
+
+        }
+
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Listener listener = new Listener.Builder()
+                .setTopic("topic")
+                .setHandler((simplifier, message) -> {
+
+                    FunctionResponseMessage response = new FunctionResponseMessage();
+                    response.setError(FunctionResponseMessage.RESULT_OK);
+                    response.setResult(((FunctionRequestMessage) message).getParameters());
+
+                    return response;
+                })
+                .setConnectorSupplier(() -> {
+
+                    // The first two connections fail
+                    if (attempts.incrementAndGet() <= 2) {
+                        return new Connector() {
+
+                            @Override
+                            public void connect() throws ConnectorException {
+                                throw new ConnectorException("Broker unreachable");
+                            }
+
+                            @Override
+                            public EndPoint accept() throws ConnectorException {
+                                throw new ConnectorException("Not connected");
+                            }
+
+                            @Override
+                            public void close() {
+                            }
+
+                        };
+                    }
+
+                    return connector;
+                })
+                .build();
+
+        ListenerSupervisor supervisor = new ListenerSupervisor(listener, 20, 40, TimeUnit.MILLISECONDS);
+
+        Thread thread = new Thread(supervisor);
+        thread.start();
+
+        FunctionRequestMessage request = new FunctionRequestMessage();
+        request.setUser("user");
+        request.setFunction(33);
+        request.setParameters("params");
+
+        // Answered once the listener is restarted on a working connector
+        Assert.assertEquals("params", connector.send(request).get(5, TimeUnit.SECONDS).getResult());
+
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(2, supervisor.getReconnectCount());
+        Assert.assertTrue(supervisor.getLastFailure() instanceof ConnectorException);
+        Assert.assertTrue(supervisor.isConnected());
+
+        supervisor.stop();
+
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertFalse(supervisor.isRunning());
+        Assert.assertEquals(3, attempts.get());
+
+    }
+
+    @Test
+    public void testStopDuringRequest() throws Exception {
+
+        final InMemoryConnector connector = new InMemoryConnector();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        // Handled on the accepting thread
+        Listener listener = new Listener.Builder()
+                .setTopic("topic")
+                .setHandler((simplifier, message) -> {
+
+                    started.countDown();
+
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException("Request interrupted", e);
+                    }
+
+                    FunctionResponseMessage response = new FunctionResponseMessage();
+                    response.setError(FunctionResponseMessage.RESULT_OK);
+                    response.setResult(((FunctionRequestMessage) message).getParameters());
+
+                    return response;
+                })
+                .setConnectorSupplier(() -> connector)
+                .build();
+
+        ListenerSupervisor supervisor = new ListenerSupervisor(listener, 20, 40, TimeUnit.MILLISECONDS);
+
+        Thread thread = new Thread(supervisor);
+        thread.start();
+
+        FunctionRequestMessage request = new FunctionRequestMessage();
+        request.setUser("user");
+        request.setFunction(33);
+        request.setParameters("params");
+
+        CompletableFuture<FunctionResponseMessage> future = connector.send(request);
+
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        supervisor.stop();
+
+        // The request completes and its response is flushed
+        Assert.assertEquals("params", future.get(5, TimeUnit.SECONDS).getResult());
+
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue(listener.isStopped());
+
+        // A message sent after the stop is not accepted
+        Assert.assertFalse(connector.send(request).isDone());
+
+    }
+
+}
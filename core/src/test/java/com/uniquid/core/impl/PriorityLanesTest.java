@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PriorityLanesTest {
+
+    @Test
+    public void testWeights() {
+
+        PriorityLanes lanes = new PriorityLanes(PriorityLanes.defaultWeights());
+
+        List<PriorityLanes.Lane> order = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            lanes.submit(PriorityLanes.Lane.REQUEST, () -> order.add(PriorityLanes.Lane.REQUEST));
+        }
+
+        for (int i = 0; i < 16; i++) {
+            lanes.submit(PriorityLanes.Lane.CAPABILITY, () -> order.add(PriorityLanes.Lane.CAPABILITY));
+        }
+
+        Assert.assertEquals(116, lanes.getPendingCount());
+
+        for (int i = 0; i < 18; i++) {
+            lanes.runNext();
+        }
+
+        // 8 capability messages for every request
+        Assert.assertEquals(16, order.stream().filter(PriorityLanes.Lane.CAPABILITY::equals).count());
+        Assert.assertEquals(2, order.stream().filter(PriorityLanes.Lane.REQUEST::equals).count());
+        Assert.assertEquals(PriorityLanes.Lane.CAPABILITY, order.get(0));
+
+        Assert.assertEquals(0, lanes.getPendingCount(PriorityLanes.Lane.CAPABILITY));
+        Assert.assertEquals(98, lanes.getPendingCount(PriorityLanes.Lane.REQUEST));
+
+    }
+
+    @Test
+    public void testIdleLane() {
+
+        PriorityLanes lanes = new PriorityLanes(PriorityLanes.defaultWeights());
+
+        // A lane served alone doesn't starve the others later
+        for (int i = 0; i < 50; i++) {
+            lanes.submit(PriorityLanes.Lane.REQUEST, () -> { });
+            lanes.runNext();
+        }
+
+        Runnable owner = () -> { };
+
+        lanes.submit(PriorityLanes.Lane.REQUEST, () -> { });
+        lanes.submit(PriorityLanes.Lane.OWNER, owner);
+
+        Assert.assertSame(owner, lanes.poll());
+        Assert.assertNotNull(lanes.poll());
+        Assert.assertNull(lanes.poll());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWeights() {
+        new PriorityLanes(new int[] { 1, 1, 1, 0 });
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testUnlimited() {
+
+        RateLimiter limiter = new RateLimiter(null, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(limiter.tryAcquire("user", 33));
+        }
+
+        Assert.assertEquals(0, limiter.getTrackedUsers());
+
+    }
+
+    @Test
+    public void testBurst() {
+
+        RateLimiter limiter = new RateLimiter(new RateLimiter.Limit(0.001, 3), 100);
+
+        Assert.assertTrue(limiter.tryAcquire("user", 33));
+        Assert.assertTrue(limiter.tryAcquire("user", 33));
+        Assert.assertTrue(limiter.tryAcquire("user", 34));
+        Assert.assertFalse(limiter.tryAcquire("user", 33));
+
+        // Every user has its own bucket
+        Assert.assertTrue(limiter.tryAcquire("other", 33));
+
+        Assert.assertEquals(1, limiter.getThrottledCount());
+        Assert.assertEquals(2, limiter.getTrackedUsers());
+
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+
+        RateLimiter limiter = new RateLimiter(new RateLimiter.Limit(100, 1), 100);
+
+        Assert.assertTrue(limiter.tryAcquire("user", 33));
+        Assert.assertFalse(limiter.tryAcquire("user", 33));
+
+        Thread.sleep(50);
+
+        Assert.assertTrue(limiter.tryAcquire("user", 33));
+
+    }
+
+    @Test
+    public void testUserLimit() {
+
+        RateLimiter limiter = new RateLimiter(new RateLimiter.Limit(0.001, 1), 100);
+
+        limiter.setUserLimit("gateway", new RateLimiter.Limit(0.001, 5));
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.tryAcquire("gateway", 33));
+        }
+
+        Assert.assertFalse(limiter.tryAcquire("gateway", 33));
+
+        Assert.assertTrue(limiter.tryAcquire("user", 33));
+        Assert.assertFalse(limiter.tryAcquire("user", 33));
+
+    }
+
+    @Test
+    public void testFunctionLimit() {
+
+        RateLimiter limiter = new RateLimiter(new RateLimiter.Limit(0.001, 3), 100);
+
+        limiter.setFunctionLimit(30, new RateLimiter.Limit(0.001, 1));
+
+        Assert.assertTrue(limiter.tryAcquire("user", 30));
+        Assert.assertFalse(limiter.tryAcquire("user", 30));
+
+        // The refused request didn't consume the token of the user
+        Assert.assertTrue(limiter.tryAcquire("user", 31));
+        Assert.assertTrue(limiter.tryAcquire("user", 31));
+        Assert.assertFalse(limiter.tryAcquire("user", 31));
+
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+
+        RateLimiter limiter = new RateLimiter(new RateLimiter.Limit(100, 1), 100);
+
+        limiter.tryAcquire("user1", 33);
+        limiter.tryAcquire("user2", 33);
+
+        Assert.assertEquals(2, limiter.getTrackedUsers());
+
+        Thread.sleep(50);
+
+        Assert.assertEquals(2, limiter.evictIdle());
+        Assert.assertEquals(0, limiter.getTrackedUsers());
+
+    }
+
+}
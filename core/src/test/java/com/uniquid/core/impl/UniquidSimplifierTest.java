@@ -7,10 +7,27 @@
 
 package com.uniquid.core.impl;
 
+import com.uniquid.core.impl.test.DummyNode;
+import com.uniquid.core.impl.test.DummyProviderRegister;
+import com.uniquid.core.impl.test.DummyUserRegister;
 import com.uniquid.core.provider.impl.ApplicationContext;
+import com.uniquid.core.provider.impl.GenericFunction;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import com.uniquid.node.UniquidNode;
+import com.uniquid.register.RegisterFactory;
+import com.uniquid.register.exception.RegisterException;
+import com.uniquid.register.provider.ProviderRegister;
+import com.uniquid.register.transaction.TransactionManager;
+import com.uniquid.register.user.UserRegister;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class UniquidSimplifierTest {
 
     @Test
@@ -40,4 +57,152 @@ public class UniquidSimplifierTest {
 
     }
 
+    private static UniquidSimplifier createSimplifier(UniquidNode node) throws Exception {
+
+        RegisterFactory dummyFactory = new RegisterFactory() {
+
+            @Override
+            public UserRegister getUserRegister() throws RegisterException {
+                return new DummyUserRegister();
+            }
+
+            @Override
+            public ProviderRegister getProviderRegister() throws RegisterException {
+                return new DummyProviderRegister();
+            }
+
+            @Override
+            public TransactionManager getTransactionManager() throws RegisterException {
+                return null;
+            }
+
+        };
+
+        return new UniquidSimplifier(dummyFactory, node);
+    }
+
+    @Test
+    public void testShutdownDrain() throws Exception {
+
+        UniquidSimplifier simplifier = createSimplifier(new DummyNode());
+
+        final AtomicBoolean destroyed = new AtomicBoolean();
+
+        simplifier.addFunction(new GenericFunction() {
+
+            @Override
+            public void service(FunctionRequestMessage inputMessage, FunctionResponseMessage outputMessage, byte[] payload) {
+                outputMessage.setResult("result");
+            }
+
+            @Override
+            public void destroy() {
+                destroyed.set(true);
+            }
+
+        }, 33);
+
+        simplifier.shutdown(1, TimeUnit.SECONDS);
+
+        Assert.assertTrue(destroyed.get());
+        Assert.assertTrue(simplifier.getListenerSupervisors().isEmpty());
+
+    }
+
+    @Test
+    public void testRestartSync() throws Exception {
+
+        final AtomicInteger syncs = new AtomicInteger();
+
+        UniquidSimplifier simplifier = createSimplifier(new DummyNode() {
+
+            @Override
+            public void updateNode() {
+                syncs.incrementAndGet();
+            }
+
+        });
+
+        Future<Void> sync = simplifier.syncBlockchain();
+
+        Assert.assertNotNull(simplifier.getBlockchainSyncScheduler());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (syncs.get() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        sync.cancel(false);
+
+        Assert.assertNull(simplifier.getBlockchainSyncScheduler());
+
+        // A new synchronization starts with a first run
+        Future<Void> restarted = simplifier.syncBlockchain();
+
+        Assert.assertNotSame(sync, restarted);
+        Assert.assertFalse(restarted.isDone());
+
+        deadline = System.currentTimeMillis() + 5000;
+        while (syncs.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertTrue(syncs.get() >= 2);
+
+        simplifier.shutdown();
+
+        Assert.assertTrue(restarted.isDone());
+        Assert.assertNull(simplifier.getBlockchainSyncScheduler());
+
+    }
+
+    @Test
+    public void testShutdownStopsSync() throws Exception {
+
+        for (boolean graceful : new boolean[] { false, true }) {
+
+            final AtomicInteger syncs = new AtomicInteger();
+
+            UniquidSimplifier simplifier = createSimplifier(new DummyNode() {
+
+                @Override
+                public void updateNode() {
+                    syncs.incrementAndGet();
+                }
+
+            });
+
+            simplifier.setSyncDelays(100, 100, 100, TimeUnit.MILLISECONDS);
+
+            Future<Void> sync = simplifier.syncBlockchain();
+
+            // The first synchronization runs immediately, the next one is scheduled
+            long deadline = System.currentTimeMillis() + 5000;
+            while (syncs.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertTrue(syncs.get() > 0);
+
+            if (graceful) {
+                simplifier.shutdown(1, TimeUnit.SECONDS);
+            } else {
+                simplifier.shutdown();
+            }
+
+            Assert.assertTrue(sync.isDone());
+
+            Thread.sleep(50);
+
+            int count = syncs.get();
+
+            // The synchronization already scheduled doesn't run
+            Thread.sleep(300);
+
+            Assert.assertEquals(count, syncs.get());
+
+        }
+
+    }
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl.provider;
+
+import com.uniquid.core.ResponseCodes;
+import com.uniquid.core.provider.impl.ChunkedResponseStream;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class ChunkedResponseStreamTest {
+
+    @Test
+    public void testSingleResponse() throws Exception {
+
+        List<FunctionResponseMessage> chunks = new ArrayList<>();
+
+        ChunkedResponseStream stream = new ChunkedResponseStream(chunks::add, 100);
+
+        stream.write("small ");
+        stream.write("result");
+
+        FunctionResponseMessage response = stream.finish();
+
+        Assert.assertTrue(chunks.isEmpty());
+        Assert.assertEquals("small result", response.getResult());
+        Assert.assertEquals(FunctionResponseMessage.RESULT_OK, response.getError());
+
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+
+        List<FunctionResponseMessage> chunks = new ArrayList<>();
+
+        ChunkedResponseStream stream = new ChunkedResponseStream(chunks::add, 4);
+
+        stream.write("0123456789");
+
+        Assert.assertEquals(2, chunks.size());
+
+        chunks.add(stream.finish());
+
+        Assert.assertEquals(3, stream.getChunkCount());
+
+        StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < chunks.size(); i++) {
+
+            FunctionResponseMessage chunk = chunks.get(i);
+            JSONObject json = new JSONObject(chunk.getResult());
+
+            boolean last = i == chunks.size() - 1;
+
+            Assert.assertEquals(i, json.getInt("seq"));
+            Assert.assertEquals(last, json.getBoolean("last"));
+            Assert.assertEquals("plain", json.getString("encoding"));
+            Assert.assertEquals(last ? FunctionResponseMessage.RESULT_OK : ResponseCodes.RESULT_PARTIAL, chunk.getError());
+
+            result.append(json.getString("data"));
+
+        }
+
+        Assert.assertEquals("0123456789", result.toString());
+
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+
+        List<FunctionResponseMessage> chunks = new ArrayList<>();
+
+        ChunkedResponseStream stream = new ChunkedResponseStream(chunks::add, 2048);
+
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 2048; i++) {
+            data.append('a');
+        }
+
+        stream.write(data.toString());
+        stream.finish();
+
+        JSONObject json = new JSONObject(chunks.get(0).getResult());
+
+        Assert.assertEquals("gzip", json.getString("encoding"));
+
+        byte[] compressed = Base64.getDecoder().decode(json.getString("data"));
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = gzip.read(buffer)) > 0) {
+                decompressed.write(buffer, 0, read);
+            }
+
+        }
+
+        Assert.assertEquals(data.toString(), new String(decompressed.toByteArray(), "UTF-8"));
+
+    }
+
+    @Test
+    public void testNoSink() throws Exception {
+
+        ChunkedResponseStream stream = new ChunkedResponseStream(null, 4);
+
+        stream.write("0123456789");
+        stream.flush();
+
+        Assert.assertEquals("0123456789", stream.finish().getResult());
+        Assert.assertEquals(0, stream.getChunkCount());
+
+    }
+
+}
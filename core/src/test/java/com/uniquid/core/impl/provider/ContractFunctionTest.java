@@ -17,6 +17,7 @@ import com.uniquid.core.provider.impl.ApplicationContext;
 import com.uniquid.core.provider.impl.ContractFunction;
 import com.uniquid.messages.FunctionRequestMessage;
 import com.uniquid.messages.FunctionResponseMessage;
+import org.json.JSONArray;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -121,4 +122,59 @@ public class ContractFunctionTest {
 
 
     }
+
+    @Test
+    public void testServiceBatch() throws Exception {
+
+        ContractFunction contractFunction = new ContractFunction();
+
+        contractFunction.init(new FunctionConfig() {
+
+            @Override
+            public FunctionContext getFunctionContext() {
+                ApplicationContext appContext = new ApplicationContext();
+                appContext.setAttribute(Core.NODE_ATTRIBUTE, new DummyExceptionNode());
+
+                return appContext;
+            }
+        });
+
+        FunctionRequestMessage providerRequest = new FunctionRequestMessage();
+        providerRequest.setUser("sender");
+        providerRequest.setFunction(30);
+        providerRequest.setParameters("[ { \"tx\":\"1234\", \"paths\": [\"1234\"] }, { \"paths\": [] }, "
+                + "{ \"tx\":\"5678\", \"paths\": [\"5678\"] } ]");
+
+        FunctionResponseMessage providerResponse = new FunctionResponseMessage();
+
+        contractFunction.service(providerRequest, providerResponse, null);
+
+        JSONArray results = new JSONArray(providerResponse.getResult());
+
+        Assert.assertEquals(3, results.length());
+        Assert.assertEquals("-1 - Exception", results.getString(0));
+        Assert.assertEquals("-1 - Problem with input JSON", results.getString(1));
+        Assert.assertEquals("-1 - Exception", results.getString(2));
+
+        providerRequest.setParameters("[ ]");
+
+        contractFunction.service(providerRequest, providerResponse, null);
+
+        Assert.assertEquals("[]", providerResponse.getResult());
+
+        providerRequest.setParameters("[ { \"tx\":\"1234\", \"paths\": [\"1234\"] } { } ]");
+
+        try {
+
+            contractFunction.service(providerRequest, providerResponse, null);
+            Assert.fail();
+
+        } catch (FunctionException ex) {
+
+            Assert.assertEquals("Problem with input JSON", ex.getMessage());
+
+        }
+
+    }
+
 }
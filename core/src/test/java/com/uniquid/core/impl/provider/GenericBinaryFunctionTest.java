@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.impl.provider;
+
+import com.uniquid.core.provider.exception.FunctionException;
+import com.uniquid.core.provider.impl.BinaryPayload;
+import com.uniquid.core.provider.impl.GenericBinaryFunction;
+import com.uniquid.messages.FunctionRequestMessage;
+import com.uniquid.messages.FunctionResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class GenericBinaryFunctionTest {
+
+    private final GenericBinaryFunction reverse = new GenericBinaryFunction() {
+
+        @Override
+        public ByteBuffer serviceBinary(FunctionRequestMessage inputMessage, ByteBuffer parameters, byte[] payload) {
+
+            ByteBuffer result = ByteBuffer.allocate(parameters.remaining());
+
+            for (int i = parameters.limit() - 1; i >= parameters.position(); i--) {
+                result.put(parameters.get(i));
+            }
+
+            result.flip();
+
+            return result;
+        }
+    };
+
+    @Test
+    public void testService() throws Exception {
+
+        FunctionRequestMessage inputMessage = new FunctionRequestMessage();
+        inputMessage.setParameters(BinaryPayload.encode(new byte[] { 1, 2, 3, (byte) 0xff }));
+
+        FunctionResponseMessage outputMessage = new FunctionResponseMessage();
+
+        reverse.service(inputMessage, outputMessage, null);
+
+        ByteBuffer result = BinaryPayload.decode(outputMessage.getResult());
+
+        Assert.assertEquals(4, result.remaining());
+        Assert.assertEquals((byte) 0xff, result.get(0));
+        Assert.assertEquals(1, result.get(3));
+
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        FunctionRequestMessage inputMessage = new FunctionRequestMessage();
+
+        FunctionResponseMessage outputMessage = new FunctionResponseMessage();
+
+        reverse.service(inputMessage, outputMessage, null);
+
+        Assert.assertEquals("", outputMessage.getResult());
+
+    }
+
+    @Test(expected = FunctionException.class)
+    public void testInvalidParameters() throws Exception {
+
+        FunctionRequestMessage inputMessage = new FunctionRequestMessage();
+        inputMessage.setParameters("not base64!");
+
+        reverse.service(inputMessage, new FunctionResponseMessage(), null);
+
+    }
+
+    @Test
+    public void testEncodeSlice() {
+
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 1, 2, 3 });
+        buffer.position(2);
+
+        Assert.assertEquals(BinaryPayload.encode(new byte[] { 2, 3 }), BinaryPayload.encode(buffer));
+        Assert.assertEquals(2, buffer.position());
+
+    }
+
+}
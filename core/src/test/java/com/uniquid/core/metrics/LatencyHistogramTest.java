@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+
+        for (long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE }) {
+
+            int index = LatencyHistogram.indexOf(value);
+            long upper = LatencyHistogram.upperBoundOf(index);
+
+            Assert.assertTrue(upper >= value);
+            Assert.assertTrue(upper - value <= value / LatencyHistogram.SUB_BUCKETS);
+
+            if (index > 0) {
+                Assert.assertTrue(LatencyHistogram.upperBoundOf(index - 1) < value);
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Assert.assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getMean());
+        Assert.assertEquals(1000000, histogram.getMax());
+
+        long p50 = histogram.getPercentile(50);
+        Assert.assertTrue(p50 >= 500000 && p50 <= 500000 * 17 / 16);
+
+        long p99 = histogram.getPercentile(99);
+        Assert.assertTrue(p99 >= 990000 && p99 <= 1000000);
+
+        histogram.reset();
+
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+
+    }
+
+}
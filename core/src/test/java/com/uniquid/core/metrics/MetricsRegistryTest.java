@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016-2018. Uniquid Inc. or its affiliates. All Rights Reserved.
+ *
+ * License is in the "LICENSE" file accompanying this file.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.uniquid.core.metrics;
+
+import com.uniquid.messages.FunctionResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testRecord() {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        registry.recordAuthorization(33, 100, true);
+        registry.recordAuthorization(33, 100, false);
+        registry.recordExecution(33, 1000, FunctionResponseMessage.RESULT_OK);
+        registry.recordExecution(33, 2000, FunctionResponseMessage.RESULT_ERROR);
+        registry.recordExecution(34, 0, FunctionResponseMessage.RESULT_FUNCTION_NOT_AVAILABLE);
+        registry.recordFlush(33, 10);
+        registry.recordThrottled(33);
+
+        // Out of range numbers are ignored
+        registry.recordExecution(-1, 1000, FunctionResponseMessage.RESULT_OK);
+        registry.recordExecution(MetricsRegistry.MAX_FUNCTIONS, 1000, FunctionResponseMessage.RESULT_OK);
+
+        Assert.assertArrayEquals(new int[] { 33, 34 }, registry.getFunctionNumbers());
+
+        FunctionMetrics metrics = registry.getFunctionMetrics(33);
+
+        Assert.assertEquals(2, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getErrors());
+        Assert.assertEquals(1, metrics.getUnauthorized());
+        Assert.assertEquals(1, metrics.getThrottled());
+        Assert.assertEquals(2, metrics.getAuthorizationLatency().getCount());
+        Assert.assertEquals(2000, metrics.getExecutionMax());
+        Assert.assertEquals(1, metrics.getFlushLatency().getCount());
+
+        Assert.assertEquals(0, registry.getFunctionMetrics(34).getCalls());
+        Assert.assertEquals(1, registry.getFunctionMetrics(34).getNotAvailable());
+
+    }
+
+    @Test
+    public void testGauges() {
+
+        MetricsRegistry registry = new MetricsRegistry();
+
+        AtomicLong value = new AtomicLong(5);
+
+        registry.registerGauge("queue", value::get);
+
+        Assert.assertEquals(Long.valueOf(5), registry.getGauge("queue"));
+
+        value.set(7);
+
+        Assert.assertEquals(Long.valueOf(7), registry.getGauges().get("queue"));
+
+        registry.removeGauge("queue");
+
+        Assert.assertNull(registry.getGauge("queue"));
+
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.recordExecution(33, 1000, FunctionResponseMessage.RESULT_OK);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        registry.registerMBeans("com.uniquid.test");
+
+        try {
+
+            registry.recordExecution(35, 1000, FunctionResponseMessage.RESULT_OK);
+
+            Assert.assertEquals(1L, server.getAttribute(
+                    new ObjectName("com.uniquid.test:type=Function,function=33"), "Calls"));
+            Assert.assertEquals(1L, server.getAttribute(
+                    new ObjectName("com.uniquid.test:type=Function,function=35"), "Calls"));
+            Assert.assertTrue(server.isRegistered(new ObjectName("com.uniquid.test:type=Registry")));
+
+        } finally {
+            registry.unregisterMBeans();
+        }
+
+        Assert.assertFalse(server.isRegistered(new ObjectName("com.uniquid.test:type=Registry")));
+
+    }
+
+}